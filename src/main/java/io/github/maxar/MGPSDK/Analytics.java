@@ -1,11 +1,8 @@
 package io.github.maxar.MGPSDK;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import okhttp3.Response;
-import org.locationtech.jts.geom.Geometry;
 
 /**
  *  Object generated by {@link Analytics.Builder} that allows the user to make OGC compliant calls
@@ -74,30 +71,24 @@ public class Analytics extends Ogc {
      * Searches using the WFS method.
      * @return FeatureCollection GeoJson result
      * @throws IllegalArgumentException if CQL filter fails check, or if builder parameters are incorrect
+     * @throws MaxarException if the search fails, see {@link ApiException} and
+     * {@link TransportException}
      */
     public AnalyticsFeatureCollection search() {
 
-        if (this.getREQUEST_TYPE() != null) {
-            throw new UnsupportedOperationException("When performing a request other than "
-                + "GetFeature, searchToString() must be used");
-        }
-        Wfs wfs = new Wfs(this);
-        if (this.getFilter() != null) {
-            OgcUtils.cqlChecker(this.getFilter());
-        }
-        Response wfsResults = wfs.search();
-        String stringWfsResults = null;
-        try {
-            assert wfsResults.body() != null;
-            stringWfsResults = wfsResults.body().string();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
-        Gson gson = new GsonBuilder()
-            .registerTypeAdapter(Geometry.class, new GeometryTypeAdapter())
-            .create();
-        return gson.fromJson(stringWfsResults,
-            AnalyticsFeatureCollection.class);
+        Response wfsResults = this.featureSearch().search();
+        return parseFeatureCollection(wfsResults, AnalyticsFeatureCollection.class);
+    }
 
+    /**
+     * Asynchronous version of {@link #search()}. Builder parameters are validated before
+     * returning, the request itself is sent through the OkHttp dispatcher
+     * @return CompletableFuture completed with the FeatureCollection GeoJson result, or
+     * exceptionally with the {@link MaxarException} {@link #search()} would have thrown
+     * @throws IllegalArgumentException if CQL filter fails check, or if builder parameters are incorrect
+     */
+    public CompletableFuture<AnalyticsFeatureCollection> searchAsync() {
+        return this.featureSearch().searchAsync()
+            .thenApply(wfsResults -> parseFeatureCollection(wfsResults, AnalyticsFeatureCollection.class));
     }
 }
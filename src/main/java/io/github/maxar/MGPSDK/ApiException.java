@@ -0,0 +1,79 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import okhttp3.Response;
+
+/**
+ * Thrown when a Maxar API returns an unsuccessful status. Holds the status code and the response
+ * body, which usually explains what was wrong with the request. Authentication failures,
+ * throttling and server errors are reported with the {@link AuthException},
+ * {@link ThrottledException} and {@link ServerErrorException} subclasses
+ */
+public class ApiException extends MaxarException {
+
+    //Longest error body kept, error pages are small but a misrouted call could return an image
+    private static final int MAX_BODY_LENGTH = 65_536;
+
+    private final int STATUS_CODE;
+    private final String BODY;
+
+    /**
+     * Constructor for <code>ApiException</code>
+     * @param message String containing the detail message
+     * @param statusCode int containing the HTTP status code
+     * @param body String containing the response body, may be empty
+     */
+    public ApiException(String message, int statusCode, String body) {
+        super(message);
+        this.STATUS_CODE = statusCode;
+        this.BODY = body;
+    }
+
+    /**
+     * Gets the HTTP status code returned by the API
+     * @return int containing the status code
+     */
+    public int getStatusCode() {
+        return this.STATUS_CODE;
+    }
+
+    /**
+     * Gets the body returned by the API
+     * @return String containing the response body, may be empty
+     */
+    public String getBody() {
+        return this.BODY;
+    }
+
+    /**
+     * Creates the exception matching an unsuccessful response, reading and closing its body
+     * @param response Response returned with an unsuccessful status
+     * @return ApiException, or the subclass matching the status code
+     */
+    static ApiException from(Response response) {
+
+        int code = response.code();
+        String body = "";
+        try (response) {
+            if (response.body() != null) {
+                body = response.body().string();
+            }
+        } catch (IOException ioe) {
+            //The status is still worth reporting without the body
+        }
+        if (body.length() > MAX_BODY_LENGTH) {
+            body = body.substring(0, MAX_BODY_LENGTH);
+        }
+        String message = String.format("Request to %s failed with status %s", response.request()
+            .url(), code);
+        if (code == 401 || code == 403) {
+            return new AuthException(message, code, body);
+        } else if (code == 429) {
+            return new ThrottledException(message, code, body,
+                RetryPolicy.retryAfterMillis(response));
+        } else if (code >= 500) {
+            return new ServerErrorException(message, code, body);
+        }
+        return new ApiException(message, code, body);
+    }
+}
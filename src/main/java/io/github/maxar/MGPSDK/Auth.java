@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -33,6 +34,7 @@ class Auth {
      * Constructor for <code>Auth</code>
      * @param credentials HashMap&lt;String, String&gt; containing user credentials
      * @throws IllegalArgumentException if credentials are not passed properly
+     * @throws AuthException if the credentials are rejected
      */
     Auth(HashMap<String, String> credentials) throws IllegalArgumentException {
         this.BASE_URL = "https://account.maxar.com";
@@ -93,6 +95,8 @@ class Auth {
      * connect endpoint to generate an access token if no refresh token is present, otherwise
      * calls {@link #getAuth()} to generate a new access token
      * @return String containing the access token
+     * @throws AuthException if the credentials are rejected or the token can not be refreshed
+     * @throws TransportException if the token endpoint can not be reached
      */
     String refreshToken() {
 
@@ -109,21 +113,15 @@ class Auth {
                     .build();
             HttpResponse<String> httpResponse;
 
-            try {
-                httpResponse = httpClient.send(postRequest, BodyHandlers.ofString());
-            }
-            catch (IOException | InterruptedException e) {
-                return "API error please try again: " + e.toString();
-            }
+            httpResponse = this.sendTokenRequest(httpClient, postRequest);
             JsonObject gsonResponse = new Gson().fromJson(httpResponse.body(), JsonObject.class);
 
             if (httpResponse.statusCode() == 400 && String.valueOf(
                 gsonResponse.get("error_description")).equals("Token is not active")) {
                 return this.getAuth();
             } else if (httpResponse.statusCode() != 200) {
-                System.out.println("Error. Status code = " + httpResponse.statusCode() + " " +
+                throw new AuthException("Token could not be refreshed", httpResponse.statusCode(),
                     httpResponse.body());
-                return null;
             } else {
                 this.access = String.valueOf(gsonResponse.get("access_token")).replaceAll(
                     "\"", "");
@@ -139,6 +137,8 @@ class Auth {
     /**
      * Generates an access token and refresh token based on a username and password combination
      * @return String containing the access token
+     * @throws AuthException if the credentials are rejected
+     * @throws TransportException if the token endpoint can not be reached
      */
     private String getAuth() {
 
@@ -151,27 +151,20 @@ class Auth {
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(HttpRequest.BodyPublishers.ofString(payload))
                 .build();
-        HttpResponse<String> httpResponse = null;
-        try {
-            httpResponse = httpClient.send(postRequest, BodyHandlers.ofString());
-        }
-        catch (IOException | InterruptedException e) {
-            return "API error please try again: " + e.toString();
-        }
+        HttpResponse<String> httpResponse = this.sendTokenRequest(httpClient, postRequest);
         JsonObject gsonResponse = new Gson().fromJson(httpResponse.body(), JsonObject.class);
         if (httpResponse.statusCode() != 200) {
+            String message;
             if (httpResponse.statusCode() == 401 && httpResponse.body().contains("Invalid client "
                 + "credentials")) {
-                throw new IllegalArgumentException("Authentication Error: Invalid User Credentials");
-            }
-            else if (httpResponse.statusCode() == 400 && httpResponse.body().contains("Account "
+                message = "Authentication Error: Invalid User Credentials";
+            } else if (httpResponse.statusCode() == 400 && httpResponse.body().contains("Account "
                 + "disabled")) {
-                System.out.println("Authentication Error:Account Disabled");
+                message = "Authentication Error: Account Disabled";
             } else {
-                System.out.println("Error: " + httpResponse.body());
+                message = "Authentication Error: status " + httpResponse.statusCode();
             }
-            System.exit(-1);
-            return null;
+            throw new AuthException(message, httpResponse.statusCode(), httpResponse.body());
         } else {
             this.access = String.valueOf(gsonResponse.get("access_token")).replaceAll("\"",
                 "");
@@ -180,4 +173,24 @@ class Auth {
             return this.access;
         }
     }
+
+    /**
+     * Sends a request to the openid connect token endpoint
+     * @param httpClient HttpClient sending the request
+     * @param postRequest HttpRequest for the token
+     * @return HttpResponse containing the token endpoint's response
+     * @throws TransportException if the request fails or the thread is interrupted
+     */
+    private HttpResponse<String> sendTokenRequest(HttpClient httpClient, HttpRequest postRequest) {
+
+        try {
+            return httpClient.send(postRequest, BodyHandlers.ofString());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new TransportException("Interrupted while requesting a token",
+                new InterruptedIOException(ie.getMessage()));
+        } catch (IOException ioe) {
+            throw new TransportException("Token endpoint could not be reached", ioe);
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package io.github.maxar.MGPSDK;
+
+/**
+ * Thrown when authentication fails: invalid or disabled credentials, a token that can not be
+ * refreshed, or an API call rejected with 401 or 403
+ */
+public class AuthException extends ApiException {
+
+    /**
+     * Constructor for <code>AuthException</code>
+     * @param message String containing the detail message
+     * @param statusCode int containing the HTTP status code
+     * @param body String containing the response body, may be empty
+     */
+    public AuthException(String message, int statusCode, String body) {
+        super(message, statusCode, body);
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Streams response bodies to disk. The body's Okio source is transferred straight into a
+ * <code>FileChannel</code>, so bytes go from OkHttp's segment pool to the file through a single
+ * direct buffer instead of being copied through heap arrays. When the server sends a
+ * <code>Content-Length</code> the file is sized up front and the transfer is checked against it.
+ * Bodies are written to a <code>.part</code> file next to the target and atomically renamed once
+ * complete, so a partially written file is never mistaken for a finished one
+ */
+class BodyWriter {
+
+    //Bytes requested from the source per transfer
+    private static final long TRANSFER_SIZE = 1 << 20;
+
+    /**
+     * Constructor for <code>BodyWriter</code>. Utility class, not meant to be instantiated
+     */
+    BodyWriter() {
+        throw new UnsupportedOperationException("BodyWriter can not be instantiated");
+    }
+
+    /**
+     * Writes a response body to a file
+     * @param body ResponseBody to write, consumed and closed
+     * @param target Path the body is written to, replaced if it exists
+     * @param checksum Checksum updated with every byte written, or null
+     * @return long containing the number of bytes written
+     * @throws IOException if the body can not be read, is shorter or longer than its
+     * <code>Content-Length</code>, or the file can not be written
+     */
+    static long write(ResponseBody body, Path target, Checksum checksum) throws IOException {
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path partPath = target.resolveSibling(target.getFileName() + ".part");
+        long expected = body.contentLength();
+        long bytes = 0;
+        try (body; RandomAccessFile file = new RandomAccessFile(partPath.toFile(), "rw");
+            FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            if (expected > 0) {
+                file.setLength(expected);
+            }
+            ReadableByteChannel source = checksum != null
+                ? checksummed(body.source(), checksum) : body.source();
+            long transferred;
+            while ((transferred = channel.transferFrom(source, bytes, TRANSFER_SIZE)) > 0) {
+                bytes += transferred;
+                if (expected >= 0 && bytes > expected) {
+                    break;
+                }
+            }
+            if (expected >= 0 && bytes != expected) {
+                throw new IOException(String.format("Expected %s bytes for %s, received %s%s",
+                    expected, target.getFileName(), bytes > expected ? "over " : "",
+                    bytes > expected ? expected : bytes));
+            }
+            channel.truncate(bytes);
+        } catch (IOException ioe) {
+            Files.deleteIfExists(partPath);
+            throw ioe;
+        }
+        Files.move(partPath, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return bytes;
+    }
+
+    /**
+     * Writes a chip already read into memory to a file, through the same <code>.part</code> file
+     * and rename as a response body
+     * @param chip ByteBuffer holding the chip between its position and limit, left unchanged
+     * @param target Path the chip is written to, replaced if it exists
+     * @param checksum Checksum updated with every byte written, or null
+     * @return long containing the number of bytes written
+     * @throws IOException if the file can not be written
+     */
+    static long write(ByteBuffer chip, Path target, Checksum checksum) throws IOException {
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path partPath = target.resolveSibling(target.getFileName() + ".part");
+        ByteBuffer data = chip.duplicate();
+        if (checksum != null) {
+            checksum.update(chip.duplicate());
+        }
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } catch (IOException ioe) {
+            Files.deleteIfExists(partPath);
+            throw ioe;
+        }
+        Files.move(partPath, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return chip.remaining();
+    }
+
+    /**
+     * Wraps a source so every byte read from it updates a checksum. The checksum is updated from
+     * the destination buffer in place, without copying it to the heap
+     * @param source BufferedSource of the body
+     * @param checksum Checksum to update
+     * @return ReadableByteChannel reading from the source
+     */
+    private static ReadableByteChannel checksummed(BufferedSource source, Checksum checksum) {
+
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+
+                int start = dst.position();
+                int read = source.read(dst);
+                if (read > 0) {
+                    ByteBuffer view = dst.duplicate();
+                    view.position(start).limit(start + read);
+                    checksum.update(view);
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return source.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+import okhttp3.Response;
+
+/**
+ * Checks a downloaded chip before it is stored, so an HTTP 200 alone is no longer taken as
+ * success. Every check runs over the chip while it is already in memory, no file is read back:
+ * the chip must be as long as its <code>Content-Length</code>, must match any MD5 or CRC32C
+ * digest the server sends in a <code>Content-MD5</code> or <code>x-goog-hash</code> header, and
+ * must start with the signature of the requested image format and, for PNG and JPEG, end with its
+ * trailer, which catches truncated chips and error documents returned with a 200. A chip failing
+ * a check is reported as an <code>IOException</code>, which the {@link RetryPolicy} retries
+ */
+class ChipVerifier {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PNG_END = {'I', 'E', 'N', 'D'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] JPEG_END = {(byte) 0xFF, (byte) 0xD9};
+    private static final byte[][] TIFF = {{'I', 'I', 42, 0}, {'M', 'M', 0, 42},
+        {'I', 'I', 43, 0}, {'M', 'M', 0, 43}};
+
+    /**
+     * <code>ChipVerifier</code> can not be instantiated
+     * @throws UnsupportedOperationException always
+     */
+    ChipVerifier() {
+        throw new UnsupportedOperationException("ChipVerifier can not be instantiated");
+    }
+
+    /**
+     * Verifies a chip read from a response
+     * @param response Response the chip was read from, used for its headers
+     * @param chip ByteBuffer holding the chip between its position and limit, left unchanged
+     * @param imageFormat String containing the requested format, jpeg, png or geotiff, or null if
+     * the format should not be checked
+     * @throws IOException if the chip fails a check
+     */
+    static void verify(Response response, ByteBuffer chip, String imageFormat) throws IOException {
+
+        String url = response.request().url().toString();
+        long expected = contentLength(response);
+        if (expected >= 0 && expected != chip.remaining()) {
+            throw new IOException(String.format("Expected %s bytes, received %s from %s", expected,
+                chip.remaining(), url));
+        }
+        String md5 = response.header("Content-MD5");
+        String crc32c = null;
+        for (String hash : response.headers("x-goog-hash")) {
+            for (String value : hash.split(",")) {
+                value = value.trim();
+                if (value.startsWith("md5=")) {
+                    md5 = value.substring(4);
+                } else if (value.startsWith("crc32c=")) {
+                    crc32c = value.substring(7);
+                }
+            }
+        }
+        if (md5 != null && !md5.equals(Base64.getEncoder().encodeToString(md5(chip)))) {
+            throw new IOException("MD5 mismatch for " + url);
+        }
+        if (crc32c != null && !crc32c.equals(Base64.getEncoder().encodeToString(crc32c(chip)))) {
+            throw new IOException("CRC32C mismatch for " + url);
+        }
+        if (!isImage(chip, imageFormat)) {
+            throw new IOException(String.format("Response is not a complete %s image: %s",
+                imageFormat, url));
+        }
+    }
+
+    /**
+     * Checks the signature of a chip, and its trailer for formats that have one
+     * @param chip ByteBuffer holding the chip, left unchanged
+     * @param imageFormat String containing the requested format, or null to skip the check
+     * @return boolean true if the chip looks like a complete image of the format
+     */
+    static boolean isImage(ByteBuffer chip, String imageFormat) {
+
+        if (imageFormat == null) {
+            return true;
+        }
+        switch (imageFormat) {
+            case "png":
+                //IEND is followed by its 4 byte CRC
+                return startsWith(chip, PNG) && endsWith(chip, PNG_END, 4);
+            case "jpeg":
+                return startsWith(chip, JPEG) && endsWith(chip, JPEG_END, 0);
+            case "geotiff":
+                for (byte[] signature : TIFF) {
+                    if (startsWith(chip, signature)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Gets the length the server declared for the body
+     * @param response Response the chip was read from
+     * @return long containing the length, -1 if not declared
+     */
+    private static long contentLength(Response response) {
+
+        String length = response.header("Content-Length");
+        if (length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Calculates the MD5 digest of a chip
+     * @param chip ByteBuffer holding the chip, left unchanged
+     * @return byte[] containing the digest
+     */
+    private static byte[] md5(ByteBuffer chip) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(chip.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            //Every JVM is required to provide MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calculates the CRC32C of a chip, big-endian as sent in <code>x-goog-hash</code>
+     * @param chip ByteBuffer holding the chip, left unchanged
+     * @return byte[] containing the 4 byte checksum
+     */
+    private static byte[] crc32c(ByteBuffer chip) {
+
+        CRC32C crc = new CRC32C();
+        crc.update(chip.duplicate());
+        return ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+    }
+
+    /**
+     * Checks the first bytes of a chip
+     * @param chip ByteBuffer holding the chip
+     * @param prefix byte[] the chip should start with
+     * @return boolean true if it does
+     */
+    private static boolean startsWith(ByteBuffer chip, byte[] prefix) {
+
+        if (chip.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (chip.get(chip.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the last bytes of a chip
+     * @param chip ByteBuffer holding the chip
+     * @param suffix byte[] the chip should end with
+     * @param padding int containing the number of bytes allowed after the suffix
+     * @return boolean true if it does
+     */
+    private static boolean endsWith(ByteBuffer chip, byte[] suffix, int padding) {
+
+        int start = chip.limit() - padding - suffix.length;
+        if (start < chip.position()) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (chip.get(start + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
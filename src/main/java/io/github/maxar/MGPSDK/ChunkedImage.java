@@ -0,0 +1,197 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads WMS images larger than the server's {@value #MAX_SIZE} pixel limit. The image is split
+ * into a grid of equally sized GetMap chunks covering the bbox, which are fetched in parallel
+ * like the tiles of {@link Streaming#getFullResImage()} and streamed into a single tiled GeoTIFF
+ * by {@link GeoTiffTileWriter} as they arrive. Chunks are padded to a multiple of 16 pixels so
+ * they can be used as TIFF tiles, the GeoTIFF may therefore extend a few pixels past the east and
+ * south edges of the bbox
+ */
+class ChunkedImage {
+
+    static final int MAX_SIZE = 8000;
+    //Well under the server limit so chunks waiting to be encoded stay small and there are enough
+    //of them to fetch in parallel
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * <code>ChunkedImage</code> can not be instantiated
+     * @throws UnsupportedOperationException always
+     */
+    ChunkedImage() {
+        throw new UnsupportedOperationException("ChunkedImage can not be instantiated");
+    }
+
+    /**
+     * Checks whether an image download is too large for a single GetMap request
+     * @param ogc Instance of the {@link Ogc} class
+     * @return boolean true if the width or height is over {@value #MAX_SIZE} pixels
+     */
+    static boolean isChunked(Ogc ogc) {
+        return ogc.getWIDTH() > MAX_SIZE || ogc.getHEIGHT() > MAX_SIZE;
+    }
+
+    /**
+     * Downloads an image in chunks, blocking until the GeoTIFF is written
+     * @param ogc Instance of the {@link Ogc} class
+     * @return String containing the location the image was downloaded to
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if a chunk can not be downloaded or the GeoTIFF can not be written
+     */
+    static String download(Ogc ogc) throws IllegalArgumentException {
+
+        Job job = new Job(ogc);
+        int failed;
+        try {
+            failed = OgcUtils.handleMultithreadDownload(job.urls, ogc, job.geoTiff, null);
+        } catch (MaxarException me) {
+            job.abort();
+            throw me;
+        }
+        return job.finish(failed);
+    }
+
+    /**
+     * Asynchronous version of {@link #download(Ogc)}. Chunks are enqueued on an OkHttp dispatcher
+     * so the calling thread is never blocked
+     * @param ogc Instance of the {@link Ogc} class
+     * @return CompletableFuture completed with the location the image was downloaded to, or
+     * exceptionally with the {@link MaxarException} {@link #download(Ogc)} would have thrown
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    static CompletableFuture<String> downloadAsync(Ogc ogc) throws IllegalArgumentException {
+
+        Job job = new Job(ogc);
+        return OgcUtils.handleAsyncDownload(job.urls, ogc, job.geoTiff, null)
+            .whenComplete((failed, throwable) -> {
+                if (throwable != null) {
+                    job.abort();
+                }
+            })
+            .thenApply(job::finish);
+    }
+
+    /**
+     * Gets the size of the chunks an image edge is split into. Edges are split into as few chunks
+     * of at most {@value #CHUNK_SIZE} pixels as possible, balanced so the last one is not a sliver
+     * @param size int containing the image width or height in pixels
+     * @return int[] containing the number of chunks and the size of each chunk in pixels
+     */
+    static int[] chunkSize(int size) {
+
+        int count = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int chunk = (size + count - 1) / count;
+        //TIFF tile dimensions must be multiples of 16
+        return new int[] {count, (chunk + 15) / 16 * 16};
+    }
+
+    /**
+     * Chunk grid of one image download and the GeoTIFF it is written to
+     */
+    private static class Job {
+
+        private final HashMap<String, String> urls;
+        private final GeoTiffTileWriter geoTiff;
+        private final Path path;
+
+        /**
+         * Constructor for <code>Job</code>. Splits the bbox into chunks and starts the GeoTIFF
+         * writer
+         * @param ogc Instance of the {@link Ogc} class
+         * @throws IllegalArgumentException if builder parameters are not set correctly
+         */
+        Job(Ogc ogc) throws IllegalArgumentException {
+
+            if (!ogc.isDownload() || ogc.isDISPLAY()) {
+                throw new IllegalArgumentException(String.format("Images over %s pixels can only be "
+                    + "downloaded, set .download()", MAX_SIZE));
+            }
+            String srsname = ogc.getSrsname() != null ? ogc.getSrsname() : "EPSG:4326";
+            //The SDK's bboxes are miny, minx, maxy, maxx in every projection
+            String[] bboxList = ogc.getBbox().split(",");
+            double minX = Double.parseDouble(bboxList[1].trim());
+            double maxY = Double.parseDouble(bboxList[2].trim());
+            double pixelWidth = (Double.parseDouble(bboxList[3].trim()) - minX) / ogc.getWIDTH();
+            double pixelHeight = (maxY - Double.parseDouble(bboxList[0].trim())) / ogc.getHEIGHT();
+            int[] cols = chunkSize(ogc.getWIDTH());
+            int[] rows = chunkSize(ogc.getHEIGHT());
+            double chunkWidth = cols[1] * pixelWidth;
+            double chunkHeight = rows[1] * pixelHeight;
+
+            HashMap<String, String> bboxes = new HashMap<>();
+            for (int row = 0; row < rows[0]; row++) {
+                //Rows are numbered from the top of the grid
+                double top = maxY - row * chunkHeight;
+                for (int col = 0; col < cols[0]; col++) {
+                    double left = minX + col * chunkWidth;
+                    bboxes.put(String.format("c%s_r%s", col, row), String.join(",",
+                        String.valueOf(left), String.valueOf(top - chunkHeight),
+                        String.valueOf(left + chunkWidth), String.valueOf(top), srsname));
+                }
+            }
+            this.urls = new Wms(ogc).chunkUrls(bboxes, cols[1], rows[1]);
+            System.out.printf("Image over %s pixels, downloading in %s chunks of %sx%s%n",
+                MAX_SIZE, this.urls.size(), cols[1], rows[1]);
+
+            String fileName = ogc.getFileName() != null ? ogc.getFileName() : "Download";
+            try {
+                this.path = ogc.getDownloadPath() != null
+                    ? Paths.get(ogc.getDownloadPath(), fileName + ".tif")
+                    : Paths.get(System.getProperty("user.home"), "Downloads", fileName + ".tif");
+                Files.createDirectories(this.path.toAbsolutePath().getParent());
+            } catch (InvalidPathException | IOException e) {
+                throw new IllegalArgumentException(String.format("Path %s not valid.",
+                    ogc.getDownloadPath()));
+            }
+            //Uncompressed images over 4GB need a BigTIFF
+            boolean bigTiff = ogc.isBIG_TIFF()
+                || (long) cols[0] * cols[1] * rows[0] * rows[1] * 4 >= 1L << 32;
+            this.geoTiff = new GeoTiffTileWriter(this.path, this.urls.keySet(),
+                new double[] {minX, maxY, chunkWidth, chunkHeight},
+                OgcUtils.decodeCrs(srsname, true), bigTiff,
+                GeoTiffTileWriter.bufferedChips(cols[1], rows[1]));
+        }
+
+        /**
+         * Waits for the GeoTIFF to be completed once every chunk has been requested
+         * @param failed Integer containing the number of chunks that failed to download
+         * @return String containing the location the image was downloaded to
+         * @throws MaxarException if a chunk failed or the GeoTIFF can not be written
+         */
+        private String finish(Integer failed) {
+
+            try {
+                this.geoTiff.finish();
+            } catch (IOException ioe) {
+                throw new MaxarException("File could not be downloaded to " + this.path, ioe);
+            }
+            if (failed > 0) {
+                throw new MaxarException(String.format("%s of %s chunks could not be downloaded, "
+                    + "their area is left empty in %s", failed, this.urls.size(), this.path));
+            }
+            return "File downloaded to: " + this.path;
+        }
+
+        /**
+         * Stops the GeoTIFF writer after the download failed, so neither the writer thread nor a
+         * chunk waiting for room in its buffer waits forever
+         */
+        private void abort() {
+
+            try {
+                this.geoTiff.finish();
+            } catch (IOException ignored) {
+                //The download failure is reported instead
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Process wide circuit breaker for each Maxar endpoint (streaming, basemaps, analytics). While
+ * closed, the outcome of the last {@value #WINDOW_SIZE} requests is kept in a sliding window and
+ * once at least half of them failed (transport failures, timeouts, 408 and 5xx responses) the
+ * circuit opens. An open circuit fails every request immediately with a
+ * {@link CircuitOpenException} instead of letting it wait out timeouts and retries. After the open
+ * period, up to {@value #TRIAL_CALLS} trial requests are let through: if they all succeed the
+ * circuit closes again, if any fails it reopens for twice as long. Throttling (429) is left to
+ * the rate and concurrency limiters and does not count as a failure
+ */
+class CircuitBreaker {
+
+    static final String CLOSED = "CLOSED";
+    static final String OPEN = "OPEN";
+    static final String HALF_OPEN = "HALF_OPEN";
+    static final int WINDOW_SIZE = 20;
+    //Fewest outcomes in the window before the failure ratio is trusted
+    static final int MIN_CALLS = 10;
+    static final double FAILURE_RATIO = 0.5;
+    static final int TRIAL_CALLS = 3;
+    private static final long OPEN_MILLIS = 30_000;
+    private static final long MAX_OPEN_MILLIS = 300_000;
+    private static final ConcurrentHashMap<String, CircuitBreaker> BREAKERS =
+        new ConcurrentHashMap<>();
+
+    private final String ENDPOINT;
+    private final LongSupplier CLOCK;
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private String state = CLOSED;
+    private long openedAtMillis;
+    private long openMillis = OPEN_MILLIS;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    /**
+     * Constructor for <code>CircuitBreaker</code>. The circuit starts closed
+     * @param endpoint String containing the endpoint guarded by the breaker
+     */
+    CircuitBreaker(String endpoint) {
+        this(endpoint, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for <code>CircuitBreaker</code> timing its open periods with the given clock
+     * @param endpoint String containing the endpoint guarded by the breaker
+     * @param clock LongSupplier containing the current time in milliseconds
+     */
+    CircuitBreaker(String endpoint, LongSupplier clock) {
+        this.ENDPOINT = endpoint;
+        this.CLOCK = clock;
+    }
+
+    /**
+     * Sends a request through the breaker of its endpoint, blocking the calling thread. Requests
+     * to other hosts are sent unchecked
+     * @param request Request being sent, used to find the endpoint
+     * @param attempt {@link RetryPolicy.Attempt} sending the request once
+     * @return Response returned by the server
+     * @throws CircuitOpenException if the circuit of the endpoint is open
+     * @throws IOException if the request fails
+     */
+    static Response execute(Request request, RetryPolicy.Attempt attempt) throws IOException {
+
+        CircuitBreaker breaker = forRequest(request);
+        if (breaker == null) {
+            return attempt.send();
+        }
+        boolean trial = breaker.acquirePermission();
+        Boolean failed = null;
+        try {
+            Response response = attempt.send();
+            failed = isFailure(response.code());
+            return response;
+        } catch (IOException ioe) {
+            //An interrupted caller says nothing about the endpoint's health
+            failed = Thread.currentThread().isInterrupted() ? null : Boolean.TRUE;
+            throw ioe;
+        } finally {
+            breaker.onResult(trial, failed);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(Request, RetryPolicy.Attempt)}
+     * @param request Request being sent, used to find the endpoint
+     * @param attempt Supplier sending the request once
+     * @return CompletableFuture completed with the Response, or exceptionally with a
+     * {@link CircuitOpenException} if the circuit of the endpoint is open. Cancelling the future
+     * cancels the attempt and is not counted against the endpoint
+     */
+    static CompletableFuture<Response> executeAsync(Request request,
+        Supplier<CompletableFuture<Response>> attempt) {
+
+        CircuitBreaker breaker = forRequest(request);
+        if (breaker == null) {
+            return attempt.get();
+        }
+        boolean trial;
+        try {
+            trial = breaker.acquirePermission();
+        } catch (CircuitOpenException coe) {
+            return CompletableFuture.failedFuture(coe);
+        }
+        CompletableFuture<Response> future = attempt.get();
+        future.whenComplete((response, throwable) -> {
+            Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            Boolean failed = response != null ? Boolean.valueOf(isFailure(response.code()))
+                : failure instanceof CancellationException ? null : Boolean.TRUE;
+            breaker.onResult(trial, failed);
+        });
+        return future;
+    }
+
+    /**
+     * Finds the breaker of the endpoint a request is sent to, creating it on first use
+     * @param request Request about to be sent
+     * @return CircuitBreaker of the endpoint, or null if the request is not sent to a Maxar endpoint
+     */
+    static CircuitBreaker forRequest(Request request) {
+
+        String endpoint = RateLimiter.endpoint(request.url());
+        return endpoint != null ? BREAKERS.computeIfAbsent(endpoint, CircuitBreaker::new) : null;
+    }
+
+    /**
+     * Checks whether a request may be sent, moving an open circuit to half open once its open
+     * period has passed
+     * @return boolean true if the request is one of the trial requests of a half open circuit
+     * @throws CircuitOpenException if the circuit is open or all trial requests are in flight
+     */
+    synchronized boolean acquirePermission() throws CircuitOpenException {
+
+        if (OPEN.equals(this.state)) {
+            long remaining = this.openedAtMillis + this.openMillis - this.CLOCK.getAsLong();
+            if (remaining > 0) {
+                throw new CircuitOpenException(this.ENDPOINT, remaining);
+            }
+            this.state = HALF_OPEN;
+            this.trialsInFlight = 0;
+            this.trialSuccesses = 0;
+        }
+        if (HALF_OPEN.equals(this.state)) {
+            if (this.trialsInFlight >= TRIAL_CALLS) {
+                throw new CircuitOpenException(this.ENDPOINT, 0);
+            }
+            this.trialsInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the outcome of a request sent with {@link #acquirePermission()}
+     * @param trial boolean true if the request was a trial request
+     * @param failed Boolean true if the request failed, false if it succeeded, or null if it was
+     * abandoned by the caller
+     */
+    synchronized void onResult(boolean trial, Boolean failed) {
+
+        if (trial) {
+            this.trialsInFlight--;
+            if (!HALF_OPEN.equals(this.state) || failed == null) {
+                return;
+            }
+            if (failed) {
+                this.openMillis = Math.min(MAX_OPEN_MILLIS, this.openMillis * 2);
+                this.open();
+            } else if (++this.trialSuccesses >= TRIAL_CALLS) {
+                this.close();
+            }
+            return;
+        }
+        //Requests sent before the circuit opened are not part of its current window
+        if (!CLOSED.equals(this.state) || failed == null) {
+            return;
+        }
+        if (this.windowCount == WINDOW_SIZE) {
+            if (this.window[this.windowNext]) {
+                this.windowFailures--;
+            }
+        } else {
+            this.windowCount++;
+        }
+        this.window[this.windowNext] = failed;
+        if (failed) {
+            this.windowFailures++;
+        }
+        this.windowNext = (this.windowNext + 1) % WINDOW_SIZE;
+        if (this.windowCount >= MIN_CALLS && this.windowFailures >= FAILURE_RATIO * this.windowCount) {
+            this.open();
+        }
+    }
+
+    /**
+     * Opens the circuit, starting a new open period
+     */
+    private void open() {
+
+        this.state = OPEN;
+        this.openedAtMillis = this.CLOCK.getAsLong();
+        System.out.printf("The %s endpoint is failing, pausing requests for %s seconds%n",
+            this.ENDPOINT, this.openMillis / 1000);
+    }
+
+    /**
+     * Closes the circuit with an empty window
+     */
+    private void close() {
+
+        this.state = CLOSED;
+        this.openMillis = OPEN_MILLIS;
+        this.windowNext = 0;
+        this.windowCount = 0;
+        this.windowFailures = 0;
+        System.out.printf("The %s endpoint has recovered, resuming requests%n", this.ENDPOINT);
+    }
+
+    /**
+     * Gets the state of the circuit
+     * @return String containing {@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}
+     */
+    synchronized String getState() {
+        return this.state;
+    }
+
+    /**
+     * Checks whether a response status indicates the endpoint is unhealthy
+     * @param code int containing the HTTP status code
+     * @return boolean true for 408 and 5xx responses
+     */
+    static boolean isFailure(int code) {
+        return code == 408 || code >= 500;
+    }
+}
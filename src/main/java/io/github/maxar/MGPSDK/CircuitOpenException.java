@@ -0,0 +1,42 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} of its endpoint is open,
+ * so callers fail fast during an outage rather than waiting out timeouts. Not retried by
+ * {@link RetryPolicy}
+ */
+class CircuitOpenException extends IOException {
+
+    private final String ENDPOINT;
+    private final long RETRY_AFTER_MILLIS;
+
+    /**
+     * Constructor for <code>CircuitOpenException</code>
+     * @param endpoint String containing the endpoint whose circuit is open
+     * @param retryAfterMillis long containing the milliseconds until the endpoint is probed again
+     */
+    CircuitOpenException(String endpoint, long retryAfterMillis) {
+        super("The " + endpoint + " endpoint is unavailable, requests are paused for "
+            + Math.max(1, (retryAfterMillis + 999) / 1000) + " seconds");
+        this.ENDPOINT = endpoint;
+        this.RETRY_AFTER_MILLIS = retryAfterMillis;
+    }
+
+    /**
+     * Gets the endpoint whose circuit is open
+     * @return String containing the endpoint
+     */
+    String getENDPOINT() {
+        return this.ENDPOINT;
+    }
+
+    /**
+     * Gets how long until the endpoint is probed again
+     * @return long containing the delay in milliseconds
+     */
+    long getRETRY_AFTER_MILLIS() {
+        return this.RETRY_AFTER_MILLIS;
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.maxar.MGPSDK;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import okhttp3.Response;
+
+/**
+ * Adaptive limit on the number of tile requests in flight, using additive increase /
+ * multiplicative decrease. The limit grows by roughly one request for every full window of
+ * successful responses whose latency stays close to the best latency seen recently, backs off
+ * gently when latency rises (requests are queueing server side) and is cut sharply on throttling
+ * (429), server errors (5xx) and transport failures. The limit is cut at most once per round
+ * trip: requests sent before the last cut were sent under the old limit, so their outcome does not
+ * cut it again. This lets a download converge on the concurrency the account's quota actually
+ * sustains instead of a fixed thread count. Waiting threads park on a lock rather than a monitor,
+ * so virtual threads do not pin their carrier while waiting
+ */
+class ConcurrencyLimiter {
+
+    //Cut applied on throttling, errors and timeouts
+    private static final double DROP_BACKOFF = 0.75;
+    //Cut applied when latency rises above the tolerated multiple of the baseline
+    private static final double LATENCY_BACKOFF = 0.95;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    //Number of samples after which the latency baseline is re-measured
+    private static final int BASELINE_WINDOW = 250;
+
+    private final int MIN_LIMIT;
+    private final int MAX_LIMIT;
+    private final LongSupplier CLOCK;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitFreed = this.lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long baselineMillis = Long.MAX_VALUE;
+    private long windowMinMillis = Long.MAX_VALUE;
+    private int windowSamples;
+    private long decreasedAtMillis = Long.MIN_VALUE;
+
+    /**
+     * Constructor for <code>ConcurrencyLimiter</code>
+     * @param initialLimit int containing the number of requests allowed in flight at the start
+     * @param maxLimit int containing the most requests ever allowed in flight
+     */
+    ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this(initialLimit, maxLimit, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for <code>ConcurrencyLimiter</code> timing its round trips with the given clock
+     * @param initialLimit int containing the number of requests allowed in flight at the start
+     * @param maxLimit int containing the most requests ever allowed in flight
+     * @param clock LongSupplier containing the current time in milliseconds
+     */
+    ConcurrencyLimiter(int initialLimit, int maxLimit, LongSupplier clock) {
+        this.MIN_LIMIT = 1;
+        this.MAX_LIMIT = Math.max(maxLimit, 1);
+        this.CLOCK = clock;
+        this.limit = Math.min(Math.max(initialLimit, MIN_LIMIT), MAX_LIMIT);
+    }
+
+    /**
+     * Blocks until a request may be sent. Every acquire must be followed by {@link #release()}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+
+        this.lock.lockInterruptibly();
+        try {
+            while (this.inFlight >= (int) this.limit) {
+                this.permitFreed.await();
+            }
+            this.inFlight++;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Signals that a request acquired with {@link #acquire()} has finished
+     */
+    void release() {
+
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            this.permitFreed.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adjusts the limit from the outcome of a request
+     * @param latencyMillis long containing the time between sending the request and receiving the
+     * response headers, or until it failed
+     * @param dropped boolean true if the request was throttled, failed with a server error or
+     * did not return
+     */
+    void onSample(long latencyMillis, boolean dropped) {
+
+        this.lock.lock();
+        try {
+            this.onSample(latencyMillis, dropped, this.inFlight);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adjusts the limit from the outcome of a request whose concurrency is enforced elsewhere,
+     * such as by an OkHttp dispatcher
+     * @param latencyMillis long containing the time between sending the request and receiving the
+     * response headers, or until it failed
+     * @param dropped boolean true if the request was throttled, failed with a server error or
+     * did not return
+     * @param inFlight int containing the number of requests in flight
+     */
+    void onSample(long latencyMillis, boolean dropped, int inFlight) {
+
+        this.lock.lock();
+        try {
+            int previous = (int) this.limit;
+            this.adjust(latencyMillis, dropped, inFlight);
+            if ((int) this.limit > previous) {
+                this.permitFreed.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adjusts the limit, called while holding the lock
+     * @param latencyMillis long containing the latency of the request
+     * @param dropped boolean true if the request was dropped
+     * @param inFlight int containing the number of requests in flight
+     */
+    private void adjust(long latencyMillis, boolean dropped, int inFlight) {
+
+        long now = this.CLOCK.getAsLong();
+        //Requests sent before the last cut saw the old limit, a burst of them only cuts it once
+        boolean sentAfterDecrease = now - latencyMillis > this.decreasedAtMillis;
+        if (dropped) {
+            if (sentAfterDecrease) {
+                this.decrease(DROP_BACKOFF, now);
+            }
+        } else {
+            this.windowMinMillis = Math.min(this.windowMinMillis, latencyMillis);
+            if (++this.windowSamples >= BASELINE_WINDOW || this.baselineMillis == Long.MAX_VALUE) {
+                //Roll the baseline so it follows changes in network conditions
+                this.baselineMillis = this.windowMinMillis;
+                this.windowMinMillis = Long.MAX_VALUE;
+                this.windowSamples = 0;
+            }
+            if (latencyMillis > this.baselineMillis * LATENCY_TOLERANCE) {
+                if (sentAfterDecrease) {
+                    this.decrease(LATENCY_BACKOFF, now);
+                }
+            } else if (inFlight * 2 >= (int) this.limit) {
+                //Only grow while the current limit is actually being used
+                this.limit = Math.min(MAX_LIMIT, this.limit + 1 / this.limit);
+            }
+        }
+    }
+
+    /**
+     * Cuts the limit, starting a new round trip before it can be cut again
+     * @param backoff double containing the factor the limit is multiplied by
+     * @param now long containing the current time in milliseconds
+     */
+    private void decrease(double backoff, long now) {
+        this.limit = Math.max(MIN_LIMIT, this.limit * backoff);
+        this.decreasedAtMillis = now;
+    }
+
+    /**
+     * Adjusts the limit from a returned response
+     * @param response Response returned by the request
+     */
+    void onResponse(Response response) {
+        this.onSample(response.receivedResponseAtMillis() - response.sentRequestAtMillis(),
+            isDropped(response.code()));
+    }
+
+    /**
+     * Adjusts the limit from a request that did not return
+     * @param elapsedMillis long containing the time between sending the request and its failure
+     */
+    void onFailure(long elapsedMillis) {
+        this.onSample(elapsedMillis, true);
+    }
+
+    /**
+     * Gets the current number of requests allowed in flight
+     * @return int containing the current limit
+     */
+    int getLimit() {
+
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a response status indicates the server is overloaded or throttling
+     * @param code int containing the HTTP status code
+     * @return boolean true for 429 and 5xx responses
+     */
+    static boolean isDropped(int code) {
+        return code == 429 || code >= 500;
+    }
+}
@@ -0,0 +1,285 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Runs a GetMap request for every bbox in a csv file and writes each image to
+ * <code>{csvDirectory}/{csvName}/{line}.{format}</code>. The csv is read one line at a time while
+ * at most <code>threadNumber</code> requests are in flight, so files of any length can be run.
+ * Lines whose image already exists are skipped, and the last line up to which every line has been
+ * processed is recorded in a checkpoint file next to the csv, so an interrupted batch resumes
+ * where it stopped. Lines that still fail after retrying are appended to
+ * <code>{csvName}-failed.csv</code> next to the csv, which can be run as a batch of its own. Used by
+ * {@link Ogc#getImageFromCsv()}
+ */
+class CsvImageBatch {
+
+    private final Ogc OGC;
+    private final HttpUrl BASE_URL;
+    private final Path CSV_PATH;
+    private final Path OUTPUT_PATH;
+    private final Path CHECKPOINT_PATH;
+    private final Path FAILED_PATH;
+    private final String FORMAT;
+    private final int THREAD_NUMBER;
+    //Lines finished past the checkpoint, waiting for the lines before them
+    private final TreeSet<Long> finishedLines = new TreeSet<>();
+    private final AtomicLong imagesWritten = new AtomicLong();
+    private final AtomicLong imagesSkipped = new AtomicLong();
+    private final AtomicLong imagesFailed = new AtomicLong();
+    //One retry budget for the whole batch
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    private long checkpoint;
+    private PrintWriter failedWriter;
+
+    /**
+     * Constructor for <code>CsvImageBatch</code>
+     * @param ogc Instance of the {@link Ogc} child class
+     * @param baseUrl HttpUrl containing every GetMap parameter except the bbox
+     * @param csvPath Path of the csv file
+     */
+    CsvImageBatch(Ogc ogc, HttpUrl baseUrl, Path csvPath) {
+        this(ogc, baseUrl, csvPath, ogc.getIMAGE_FORMAT() != null ? ogc.getIMAGE_FORMAT() : "jpeg",
+            OgcUtils.threadNumber(ogc));
+    }
+
+    /**
+     * Constructor for <code>CsvImageBatch</code> with the image format and thread number already
+     * resolved
+     * @param ogc Instance of the {@link Ogc} child class, or null if the batch is only run with
+     * {@link #run(BiPredicate)}
+     * @param baseUrl HttpUrl containing every GetMap parameter except the bbox
+     * @param csvPath Path of the csv file
+     * @param format String containing the file extension of the images
+     * @param threadNumber int containing the number of requests in flight
+     */
+    CsvImageBatch(Ogc ogc, HttpUrl baseUrl, Path csvPath, String format, int threadNumber) {
+        this.OGC = ogc;
+        this.BASE_URL = baseUrl;
+        this.CSV_PATH = csvPath;
+        String csvName = csvPath.getFileName().toString().replaceFirst("\\.csv$", "");
+        this.OUTPUT_PATH = csvPath.resolveSibling(csvName);
+        this.FAILED_PATH = csvPath.resolveSibling(csvName + "-failed.csv");
+        //Keyed by everything that changes the images, so a different request starts over
+        String batchKey = Integer.toHexString(Objects.hash(String.valueOf(baseUrl),
+            csvPath.toAbsolutePath().toString()));
+        this.CHECKPOINT_PATH = csvPath.resolveSibling(".csv-checkpoint-" + batchKey);
+        this.FORMAT = format;
+        this.THREAD_NUMBER = threadNumber;
+    }
+
+    /**
+     * Runs every line after the checkpoint
+     * @return long containing the number of lines that failed
+     * @throws IllegalArgumentException if the csv file does not exist
+     * @throws MaxarException if the csv can not be read or the images can not be written
+     */
+    long run() throws IllegalArgumentException {
+
+        //Get auth once for the whole batch
+        String token = OGC.getAUTH().refreshToken();
+        OkHttpClient client = OgcUtils.httpClient();
+        return this.run((bbox, imagePath) -> this.fetchImage(client, token, bbox, imagePath));
+    }
+
+    /**
+     * Runs every line after the checkpoint, fetching each image with the given function
+     * @param fetchImage BiPredicate taking the bbox and image path of a line, true if the image
+     * was written
+     * @return long containing the number of lines that failed
+     * @throws IllegalArgumentException if the csv file does not exist
+     * @throws MaxarException if the csv can not be read or the images can not be written
+     */
+    long run(BiPredicate<String, Path> fetchImage) throws IllegalArgumentException {
+
+        this.checkpoint = this.readCheckpoint();
+        if (this.checkpoint > 0) {
+            System.out.printf("Resuming csv batch after line %s%n", this.checkpoint);
+        }
+        ExecutorService executors = Executors.newFixedThreadPool(THREAD_NUMBER);
+        //Bounds the number of lines read ahead of the requests in flight
+        int maxPermits = THREAD_NUMBER * 2;
+        Semaphore permits = new Semaphore(maxPermits);
+        try (BufferedReader reader = Files.newBufferedReader(CSV_PATH, StandardCharsets.UTF_8)) {
+            Files.createDirectories(OUTPUT_PATH);
+            //A fresh batch starts a fresh list of failures, a resumed one adds to it
+            this.failedWriter = new PrintWriter(Files.newBufferedWriter(FAILED_PATH,
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                this.checkpoint > 0 ? StandardOpenOption.APPEND
+                    : StandardOpenOption.TRUNCATE_EXISTING));
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String bbox = line.trim();
+                if (lineNumber <= this.checkpoint) {
+                    continue;
+                }
+                if (bbox.isEmpty()) {
+                    this.finish(lineNumber, null);
+                    continue;
+                }
+                Path imagePath = OUTPUT_PATH.resolve(lineNumber + "." + FORMAT);
+                if (Files.exists(imagePath)) {
+                    this.imagesSkipped.incrementAndGet();
+                    this.finish(lineNumber, null);
+                    continue;
+                }
+                long number = lineNumber;
+                permits.acquire();
+                executors.execute(() -> {
+                    try {
+                        boolean written = fetchImage.test(bbox, imagePath);
+                        if (written) {
+                            this.imagesWritten.incrementAndGet();
+                        }
+                        this.finish(number, written ? null : bbox);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            //Wait for every line before writing the final checkpoint
+            permits.acquire(maxPermits);
+            permits.release(maxPermits);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            System.out.println("Csv batch interrupted: " + ie + " rerun to resume");
+        } catch (NoSuchFileException nsf) {
+            throw new IllegalArgumentException("csv file not found in directory specified: " + nsf);
+        } catch (IOException ioe) {
+            throw new MaxarException("csv batch " + CSV_PATH + " could not be run", ioe);
+        } finally {
+            executors.shutdown();
+            try {
+                executors.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                this.writeCheckpoint();
+                if (this.failedWriter != null) {
+                    this.failedWriter.close();
+                }
+            }
+        }
+        System.out.printf("Csv batch complete: %s images written to %s, %s already present, %s "
+            + "failed%n", this.imagesWritten.get(), OUTPUT_PATH, this.imagesSkipped.get(),
+            this.imagesFailed.get());
+        if (this.imagesFailed.get() > 0) {
+            System.out.println("Failed bboxes written to " + FAILED_PATH);
+        }
+        return this.imagesFailed.get();
+    }
+
+    /**
+     * Gets the location of the checkpoint
+     * @return Path of the checkpoint file
+     */
+    Path getCheckpointPath() {
+        return CHECKPOINT_PATH;
+    }
+
+    /**
+     * Downloads the image of one bbox with {@link BodyWriter}, so a partially written image is
+     * never mistaken for a finished one
+     * @param client <code>OkHttpClient</code> shared by all lines
+     * @param token String containing the bearer token
+     * @param bbox String containing the bbox of the line
+     * @param imagePath Path the image is written to
+     * @return boolean true if the image was written
+     */
+    private boolean fetchImage(OkHttpClient client, String token, String bbox, Path imagePath) {
+
+        Request getRequest = new Request.Builder()
+            .header("Authorization", "Bearer " + token)
+            .url(BASE_URL.newBuilder().addQueryParameter("bbox", bbox).build())
+            .build();
+        try (Response response = this.retryPolicy.execute(getRequest,
+            () -> OgcUtils.execute(client, getRequest))) {
+            if (response.code() != 200 || response.body() == null) {
+                System.out.printf("Request for %s failed with status %s%n", bbox, response.code());
+                return false;
+            }
+            BodyWriter.write(response.body(), imagePath, null);
+            return true;
+        } catch (IOException ioe) {
+            System.out.printf("Request for %s failed: %s%n", bbox, ioe);
+            return false;
+        }
+    }
+
+    /**
+     * Records a processed line, advancing the checkpoint past every line processed in order.
+     * Failed lines count as processed once they are recorded in the failed csv
+     * @param lineNumber long containing the line number, starting at 1
+     * @param failedBbox String containing the bbox if the line failed, null otherwise
+     */
+    private synchronized void finish(long lineNumber, String failedBbox) {
+
+        if (failedBbox != null) {
+            this.imagesFailed.incrementAndGet();
+            this.failedWriter.println(failedBbox);
+            this.failedWriter.flush();
+        }
+        this.finishedLines.add(lineNumber);
+        long previous = this.checkpoint;
+        while (!this.finishedLines.isEmpty() && this.finishedLines.first() == this.checkpoint + 1) {
+            this.checkpoint = this.finishedLines.pollFirst();
+        }
+        //Rewritten every few hundred lines rather than on every line
+        if (this.checkpoint / 256 != previous / 256) {
+            this.writeCheckpoint();
+        }
+    }
+
+    /**
+     * Reads the line up to which a previous run processed the csv
+     * @return long containing the line number, 0 to start from the beginning
+     */
+    private long readCheckpoint() {
+
+        if (!Files.exists(CHECKPOINT_PATH)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(CHECKPOINT_PATH, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Csv checkpoint could not be read, starting from the first line: "
+                + e);
+            return 0;
+        }
+    }
+
+    /**
+     * Records the line up to which the csv has been processed
+     */
+    private void writeCheckpoint() {
+
+        try {
+            Files.writeString(CHECKPOINT_PATH, String.valueOf(this.checkpoint),
+                StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            System.out.println("Csv checkpoint could not be written: " + ioe);
+        }
+    }
+}
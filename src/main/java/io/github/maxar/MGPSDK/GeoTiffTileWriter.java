@@ -0,0 +1,398 @@
+package io.github.maxar.MGPSDK;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.gce.geotiff.GeoTiffFormat;
+import org.geotools.gce.geotiff.GeoTiffWriteParams;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Writes the chips of a full resolution download straight into a single tiled, georeferenced
+ * GeoTIFF while the download is still running. Chips are handed over with
+ * {@link #accept(String, byte[])} as they arrive and a background thread encodes them into their
+ * tile slot through the GeoTools <code>GeoTiffWriter</code>, so download and encode overlap and no
+ * individual chip files are written. Chips are consumed in row-major order, so the download
+ * should be dispatched row-major. Only chips within a window of slots ahead of the first slot
+ * the writer still needs are buffered, {@link #accept(String, byte[])} blocks for chips past it
+ * until the writer catches up, so a slow encoder slows the download down instead of letting
+ * chips pile up in memory. A chip that will never arrive must be released with
+ * {@link #skip(String)} so the window can move past its slot
+ */
+class GeoTiffTileWriter implements TileGridImage.TileSource {
+
+    private static final Pattern TILE_KEY = Pattern.compile("c(\\d+)_r(\\d+)");
+    //Memory the buffered chips of one writer may take, counted as uncompressed pixels
+    static final long MAX_BUFFERED_BYTES = 256L << 20;
+    static final int MAX_BUFFERED_CHIPS = 64;
+
+    private final Path PATH;
+    private final ReferencedEnvelope ENVELOPE;
+    private final boolean BIG_TIFF;
+    private final int BUFFERED_CHIPS;
+    private final Map<Integer, byte[]> chips = new HashMap<>();
+    //Slots that will not receive a chip, because it was encoded, skipped or never requested
+    private final BitSet released = new BitSet();
+    //Admission of chips past the window, completed as the window moves
+    private final TreeMap<Integer, CompletableFuture<Void>> waiting = new TreeMap<>();
+    private final Object lock = new Object();
+    private final Thread writerThread;
+    private int cols;
+    private int rows;
+    //First slot in row-major order still waiting for its chip to be encoded or skipped
+    private int firstOpen;
+    private boolean finished;
+    private long written;
+    private volatile Throwable error;
+
+    /**
+     * Constructor for <code>GeoTiffTileWriter</code>. Starts the background encoder, which waits
+     * for the first chip to determine the tile size and color model
+     * @param path Path of the GeoTIFF to write
+     * @param tileKeys Set&lt;String&gt; containing the c{col}_r{row} key of every chip that will be
+     * requested. Slots without a key are left empty without waiting
+     * @param tileGeometry double[] containing the upper left x, upper left y, tile width and tile
+     * height of the grid in <code>crs</code> units
+     * @param crs CoordinateReferenceSystem of the grid, with x as the first axis
+     * @param bigTiff boolean true to write a BigTIFF, required for outputs over 4GB
+     * @param bufferedChips int containing the number of slots ahead of the writer whose chips are
+     * buffered, see {@link #bufferedChips(int, int)}
+     */
+    GeoTiffTileWriter(Path path, Set<String> tileKeys, double[] tileGeometry,
+        CoordinateReferenceSystem crs, boolean bigTiff, int bufferedChips) {
+        this.PATH = path;
+        this.BIG_TIFF = bigTiff;
+        this.BUFFERED_CHIPS = Math.max(bufferedChips, 1);
+        List<int[]> positions = new ArrayList<>(tileKeys.size());
+        for (String key : tileKeys) {
+            int[] position = gridPosition(key);
+            positions.add(position);
+            this.cols = Math.max(this.cols, position[0] + 1);
+            this.rows = Math.max(this.rows, position[1] + 1);
+        }
+        //Every slot is released until its key shows up
+        this.released.set(0, this.cols * this.rows);
+        for (int[] position : positions) {
+            this.released.clear(this.slot(position[0], position[1]));
+        }
+        this.firstOpen = this.released.nextClearBit(0);
+        this.ENVELOPE = new ReferencedEnvelope(tileGeometry[0],
+            tileGeometry[0] + this.cols * tileGeometry[2], tileGeometry[1] - this.rows * tileGeometry[3],
+            tileGeometry[1], crs);
+        this.writerThread = new Thread(this::encode, "geotiff-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Gets the number of chips of a given size that fit in {@value #MAX_BUFFERED_BYTES} bytes,
+     * counting each as its uncompressed pixels so the bound holds for any image format
+     * @param tileWidth int containing the width of a chip in pixels
+     * @param tileHeight int containing the height of a chip in pixels
+     * @return int containing the number of chips, between 2 and {@value #MAX_BUFFERED_CHIPS}
+     */
+    static int bufferedChips(int tileWidth, int tileHeight) {
+        long chipBytes = Math.max((long) tileWidth * tileHeight * 4, 1);
+        return (int) Math.max(Math.min(MAX_BUFFERED_BYTES / chipBytes, MAX_BUFFERED_CHIPS), 2);
+    }
+
+    /**
+     * Hands over a downloaded chip. Chips are kept encoded until the writer reaches their slot.
+     * Blocks while the slot is past the window of buffered chips
+     * @param key String containing the c{col}_r{row} key of the chip
+     * @param chip byte[] containing the encoded chip returned by the server
+     * @throws IOException if interrupted while waiting for room
+     */
+    void accept(String key, byte[] chip) throws IOException {
+
+        int[] position = gridPosition(key);
+        int slot = this.slot(position[0], position[1]);
+        synchronized (lock) {
+            while (!this.admits(slot) && this.error == null && !this.finished) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting to buffer tile " + key, ie);
+                }
+            }
+            if (this.error == null && !this.finished && !this.released.get(slot)) {
+                this.chips.put(slot, chip);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets a future completed once a chip for the key would be taken by
+     * {@link #accept(String, byte[])} without blocking, so callers that must not block can wait
+     * before requesting it
+     * @param key String containing the c{col}_r{row} key of the chip
+     * @return CompletableFuture completed when the slot is inside the window, or the writer stopped
+     */
+    CompletableFuture<Void> admitted(String key) {
+
+        int[] position = gridPosition(key);
+        int slot = this.slot(position[0], position[1]);
+        synchronized (lock) {
+            if (this.admits(slot) || this.error != null || this.finished) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return this.waiting.computeIfAbsent(slot, ignored -> new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Releases the slot of a chip that will not arrive, because its request or storage failed.
+     * The slot is written empty and no longer holds back the chips after it
+     * @param key String containing the c{col}_r{row} key of the chip
+     */
+    void skip(String key) {
+
+        int[] position = gridPosition(key);
+        List<CompletableFuture<Void>> ready;
+        synchronized (lock) {
+            ready = this.release(this.slot(position[0], position[1]));
+        }
+        ready.forEach(room -> room.complete(null));
+    }
+
+    /**
+     * Signals that no more chips will arrive and waits for the GeoTIFF to be completed. Slots
+     * whose chip never arrived are written empty
+     * @return long containing the number of chips written into the GeoTIFF
+     * @throws IOException if the GeoTIFF could not be written
+     */
+    long finish() throws IOException {
+
+        List<CompletableFuture<Void>> ready;
+        synchronized (lock) {
+            this.finished = true;
+            ready = this.releaseAll();
+        }
+        ready.forEach(room -> room.complete(null));
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + PATH, ie);
+        }
+        if (this.error != null) {
+            throw new IOException("GeoTIFF could not be written to " + PATH, this.error);
+        }
+        return this.written;
+    }
+
+    /**
+     * Blocks until the chip for a slot has arrived, or the download has finished without it
+     * @param col int containing the tile column
+     * @param row int containing the tile row
+     * @return BufferedImage containing the decoded chip, or null for an empty slot
+     * @throws IOException if the chip can not be decoded
+     */
+    @Override
+    public BufferedImage load(int col, int row) throws IOException {
+
+        int slot = this.slot(col, row);
+        byte[] chip;
+        List<CompletableFuture<Void>> ready;
+        synchronized (lock) {
+            while (!this.chips.containsKey(slot) && !this.released.get(slot) && !this.finished) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for tile " + col + "," + row, ie);
+                }
+            }
+            //Removed as soon as it is encoded, moving the window on to the next chips
+            chip = this.chips.remove(slot);
+            ready = this.release(slot);
+        }
+        ready.forEach(room -> room.complete(null));
+        if (chip == null) {
+            return null;
+        }
+        this.written++;
+        return ImageIO.read(new ByteArrayInputStream(chip));
+    }
+
+    /**
+     * Runs on the writer thread. Waits for a reference chip, then streams the tile grid through
+     * the GeoTools <code>GeoTiffWriter</code>
+     */
+    private void encode() {
+
+        try {
+            BufferedImage reference = this.awaitReference();
+            if (reference == null) {
+                return;
+            }
+            TileGridImage image = new TileGridImage(this.cols, this.rows, reference.getWidth(),
+                reference.getHeight(), reference, this);
+            writeGeoTiff(image, ENVELOPE, PATH, BIG_TIFF);
+        } catch (Throwable t) {
+            List<CompletableFuture<Void>> ready;
+            synchronized (lock) {
+                this.error = t;
+                this.chips.clear();
+                ready = this.releaseAll();
+            }
+            ready.forEach(room -> room.complete(null));
+        }
+    }
+
+    /**
+     * Encodes a tiled image as a Deflate compressed, tiled GeoTIFF through the GeoTools
+     * <code>GeoTiffWriter</code>, one tile at a time. The GeoTIFF is written to a temporary file and
+     * renamed once complete
+     * @param image RenderedImage to encode, its tiles become the GeoTIFF's tiles
+     * @param envelope ReferencedEnvelope covered by the image
+     * @param path Path to write the GeoTIFF to
+     * @param bigTiff boolean true to write a BigTIFF, required for outputs over 4GB
+     * @throws IOException if the GeoTIFF can not be written
+     */
+    static void writeGeoTiff(RenderedImage image, ReferencedEnvelope envelope, Path path,
+        boolean bigTiff) throws IOException {
+
+        GridCoverage2D coverage = new GridCoverageFactory().create(path.getFileName().toString(),
+            image, envelope);
+
+        GeoTiffWriteParams writeParams = new GeoTiffWriteParams();
+        writeParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParams.setCompressionType("Deflate");
+        writeParams.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParams.setTiling(image.getTileWidth(), image.getTileHeight());
+        writeParams.setForceToBigTIFF(bigTiff);
+        ParameterValueGroup params = new GeoTiffFormat().getWriteParameters();
+        params.parameter(AbstractGridFormat.GEOTOOLS_WRITE_PARAMS.getName().toString())
+            .setValue(writeParams);
+
+        Path partPath = path.resolveSibling(path.getFileName() + ".part");
+        File partFile = partPath.toFile();
+        GeoTiffWriter writer = new GeoTiffWriter(partFile);
+        try {
+            writer.write(coverage, params.values().toArray(new GeneralParameterValue[1]));
+        } finally {
+            writer.dispose();
+            coverage.dispose(true);
+        }
+        Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks whether a chip for a slot may be buffered. Must hold <code>lock</code>
+     * @param slot int containing the row-major slot
+     * @return boolean true if the slot is inside the window
+     */
+    private boolean admits(int slot) {
+        return slot < this.firstOpen + BUFFERED_CHIPS;
+    }
+
+    /**
+     * Marks a slot as done and moves the window past it. Must hold <code>lock</code>
+     * @param slot int containing the row-major slot
+     * @return List&lt;CompletableFuture&lt;Void&gt;&gt; containing the admissions now inside the
+     * window, to be completed once <code>lock</code> is released
+     */
+    private List<CompletableFuture<Void>> release(int slot) {
+
+        this.released.set(slot);
+        this.firstOpen = this.released.nextClearBit(this.firstOpen);
+        lock.notifyAll();
+        Map<Integer, CompletableFuture<Void>> inside = this.waiting.headMap(
+            this.firstOpen + BUFFERED_CHIPS);
+        List<CompletableFuture<Void>> ready = new ArrayList<>(inside.values());
+        inside.clear();
+        return ready;
+    }
+
+    /**
+     * Wakes every caller waiting for room once the writer has stopped taking chips. Must hold
+     * <code>lock</code>
+     * @return List&lt;CompletableFuture&lt;Void&gt;&gt; containing every pending admission, to be
+     * completed once <code>lock</code> is released
+     */
+    private List<CompletableFuture<Void>> releaseAll() {
+
+        lock.notifyAll();
+        List<CompletableFuture<Void>> ready = new ArrayList<>(this.waiting.values());
+        this.waiting.clear();
+        return ready;
+    }
+
+    /**
+     * Waits for any chip to arrive and decodes it without consuming it
+     * @return BufferedImage of the first chip, or null if the download finished without chips
+     * @throws IOException if the chip can not be decoded
+     * @throws InterruptedException if the writer thread is interrupted
+     */
+    private BufferedImage awaitReference() throws IOException, InterruptedException {
+
+        byte[] chip;
+        synchronized (lock) {
+            while (this.chips.isEmpty() && !this.finished) {
+                lock.wait();
+            }
+            if (this.chips.isEmpty()) {
+                return null;
+            }
+            chip = this.chips.values().iterator().next();
+        }
+        BufferedImage reference = ImageIO.read(new ByteArrayInputStream(chip));
+        if (reference == null) {
+            throw new IOException("Unable to decode chip");
+        }
+        return reference;
+    }
+
+    /**
+     * Gets the row-major position of a grid cell, the order the writer encodes slots in
+     * @param col int containing the tile column
+     * @param row int containing the tile row
+     * @return int slot key
+     */
+    private int slot(int col, int row) {
+        return row * this.cols + col;
+    }
+
+    /**
+     * Parses the grid position out of a c{col}_r{row} key
+     * @param key String containing the tile key
+     * @return int[] containing column and row
+     * @throws IllegalArgumentException if the key has no grid position
+     */
+    private static int[] gridPosition(String key) throws IllegalArgumentException {
+
+        Matcher matcher = TILE_KEY.matcher(key);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Tile key has no grid position: " + key);
+        }
+        return new int[] {Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))};
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Pool of reusable buffers for reading images into memory with
+ * {@link Ogc#getImageBuffer(ImageBufferPool)}, so a pipeline fetching many chips does not allocate
+ * a new array for each one. Buffers are heap backed, so their <code>array()</code> can be handed
+ * to decoders without copying. A buffer taken from the pool should be given back with
+ * {@link #release(ByteBuffer)} once the chip has been processed. Safe to share between threads
+ */
+public class ImageBufferPool {
+
+    //Capacity of new buffers when the server does not send a Content-Length
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final ArrayBlockingQueue<ByteBuffer> BUFFERS;
+
+    /**
+     * Constructor for <code>ImageBufferPool</code>
+     * @param maxBuffers int containing the most idle buffers kept for reuse, usually the number of
+     * chips processed at once
+     * @throws IllegalArgumentException if <code>maxBuffers</code> is less than 1
+     */
+    public ImageBufferPool(int maxBuffers) throws IllegalArgumentException {
+
+        if (maxBuffers < 1) {
+            throw new IllegalArgumentException("Buffer pool must hold at least 1 buffer");
+        }
+        this.BUFFERS = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * Gives a buffer back to the pool. Buffers beyond the pool's size are left to the garbage
+     * collector
+     * @param buffer ByteBuffer taken from this pool, must not be used after it is released
+     */
+    public void release(ByteBuffer buffer) {
+
+        if (buffer != null && buffer.hasArray()) {
+            buffer.clear();
+            this.BUFFERS.offer(buffer);
+        }
+    }
+
+    /**
+     * Takes a buffer with at least the given capacity from the pool, allocating one if no idle
+     * buffer is large enough
+     * @param capacity int containing the minimum capacity
+     * @return cleared ByteBuffer
+     */
+    ByteBuffer acquire(int capacity) {
+
+        ByteBuffer buffer = this.BUFFERS.poll();
+        if (buffer != null && buffer.capacity() >= capacity) {
+            return buffer;
+        }
+        //Too small for this chip, let it go so the pool converges on the chip size in use
+        return ByteBuffer.allocate(Math.max(capacity, buffer != null ? buffer.capacity() : 0));
+    }
+
+    /**
+     * Reads a response body into a buffer from the pool, sized from its
+     * <code>Content-Length</code> when known and grown as needed otherwise
+     * @param body ResponseBody to read, consumed and closed
+     * @return ByteBuffer flipped for reading, holding the whole body
+     * @throws IOException if the body can not be read
+     */
+    ByteBuffer read(ResponseBody body) throws IOException {
+
+        try (body) {
+            long length = body.contentLength();
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Image of " + length + " bytes is too large to hold in memory");
+            }
+            ByteBuffer buffer = this.acquire(length >= 0 ? (int) length : DEFAULT_CAPACITY);
+            BufferedSource source = body.source();
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (source.exhausted()) {
+                        break;
+                    }
+                    ByteBuffer larger = this.acquire(Math.max(buffer.capacity() * 2, 8192));
+                    buffer.flip();
+                    larger.put(buffer);
+                    this.release(buffer);
+                    buffer = larger;
+                }
+                if (source.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the state of a full resolution download so an interrupted job can be resumed. The
+ * manifest is a tab separated text file in the download path, named after a hash of the feature
+ * ID, bbox, projection, image format and endpoint, holding one record per tile:
+ * <code>status, key, bytes, crc32, bbox, url</code>. Every tile is written as pending before the
+ * download starts and a record is appended as each tile completes or fails, the last record for a
+ * key wins. On restart, tiles recorded as complete for the same bbox whose file still exists with
+ * the recorded size and checksum are skipped. Jobs written to a single GeoTIFF keep no manifest and
+ * are downloaded in full every time
+ */
+class JobManifest {
+
+    static final String PENDING = "pending";
+    static final String COMPLETE = "complete";
+    static final String FAILED = "failed";
+
+    private final Path DOWNLOAD_PATH;
+    private final Path MANIFEST_PATH;
+    private final String IMAGE_FORMAT;
+    private final Map<String, String[]> records = new HashMap<>();
+
+    /**
+     * Constructor for <code>JobManifest</code>. Reads the records of a previous run of the same job
+     * if there is one
+     * @param ogc Instance of the {@link Streaming} class, download path and image format must
+     * already be validated by the caller
+     */
+    JobManifest(Ogc ogc) {
+        this(ogc, ogc.getFEATURE_ID());
+    }
+
+    /**
+     * Constructor for <code>JobManifest</code> of a job that is not identified by the builder's
+     * feature ID, such as a batch of features
+     * @param ogc Instance of the {@link Streaming} class, download path and image format must
+     * already be validated by the caller
+     * @param jobId String identifying the features of the job
+     */
+    JobManifest(Ogc ogc, String jobId) {
+        this(Path.of(ogc.getDownloadPath()), ogc.getIMAGE_FORMAT(),
+            Integer.toHexString(Objects.hash(jobId, ogc.getBbox(), ogc.getSrsname(),
+                ogc.getIMAGE_FORMAT(), ogc.getENDPOINT())));
+    }
+
+    /**
+     * Constructor for <code>JobManifest</code> in a download path
+     * @param downloadPath Path the tiles are written to
+     * @param imageFormat String containing the file extension of the tiles
+     * @param jobKey String identifying the job within the download path
+     */
+    JobManifest(Path downloadPath, String imageFormat, String jobKey) {
+        this.DOWNLOAD_PATH = downloadPath;
+        this.IMAGE_FORMAT = imageFormat;
+        this.MANIFEST_PATH = this.DOWNLOAD_PATH.resolve(".fullres-manifest-" + jobKey);
+        this.read();
+    }
+
+    /**
+     * Removes every tile that a previous run completed for the same bbox and that still verifies
+     * from the tiles to download, then rewrites the manifest listing every tile of the job. Records
+     * of tiles that are no longer part of the job are dropped
+     * @param tiles Map&lt;String, String&gt; of tile keys to bboxes
+     * @param urls Map&lt;String, String&gt; of tile keys to request URLs. Verified tiles are removed
+     * @return int containing the number of tiles skipped
+     * @throws IOException if the manifest can not be written
+     */
+    synchronized int resume(Map<String, String> tiles, Map<String, String> urls) throws IOException {
+
+        int skipped = 0;
+        Iterator<Entry<String, String>> it = urls.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, String> entry = it.next();
+            String[] record = this.records.get(entry.getKey());
+            if (record != null && record[0].equals(COMPLETE)
+                && record[4].equals(tiles.get(entry.getKey())) && this.verify(record)) {
+                it.remove();
+                skipped++;
+            } else {
+                this.records.put(entry.getKey(), new String[] {PENDING, entry.getKey(), "0", "0",
+                    tiles.get(entry.getKey()), entry.getValue()});
+            }
+        }
+        this.records.keySet().retainAll(tiles.keySet());
+
+        Files.createDirectories(DOWNLOAD_PATH);
+        Path partPath = MANIFEST_PATH.resolveSibling(MANIFEST_PATH.getFileName() + ".part");
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(partPath,
+            StandardCharsets.UTF_8))) {
+            for (String[] record : this.records.values()) {
+                pw.println(String.join("\t", record));
+            }
+        }
+        Files.move(partPath, MANIFEST_PATH, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return skipped;
+    }
+
+    /**
+     * Records a tile as downloaded
+     * @param key String containing the tile key
+     * @param bytes long containing the size of the tile file
+     * @param checksum long containing the CRC32 of the tile file
+     */
+    void complete(String key, long bytes, long checksum) {
+        this.append(COMPLETE, key, bytes, checksum);
+    }
+
+    /**
+     * Records a tile as failed. Failed tiles are downloaded again on resume
+     * @param key String containing the tile key
+     */
+    void fail(String key) {
+        this.append(FAILED, key, 0, 0);
+    }
+
+    /**
+     * Gets the location of the manifest
+     * @return Path of the manifest file
+     */
+    Path getPath() {
+        return MANIFEST_PATH;
+    }
+
+    /**
+     * Calculates the CRC32 of a tile file
+     * @param path Path of the tile
+     * @return long containing the CRC32
+     * @throws IOException if the tile can not be read
+     */
+    static long checksum(Path path) throws IOException {
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Appends a record for a tile
+     * @param status String containing the tile status
+     * @param key String containing the tile key
+     * @param bytes long containing the size of the tile file
+     * @param checksum long containing the CRC32 of the tile file
+     */
+    private synchronized void append(String status, String key, long bytes, long checksum) {
+
+        String[] previous = this.records.get(key);
+        String[] record = {status, key, String.valueOf(bytes), String.valueOf(checksum),
+            previous != null ? previous[4] : "", previous != null ? previous[5] : ""};
+        this.records.put(key, record);
+        try {
+            Files.writeString(MANIFEST_PATH, String.join("\t", record) + System.lineSeparator(),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ioe) {
+            System.out.println("Job manifest could not be written: " + ioe);
+        }
+    }
+
+    /**
+     * Checks that a completed tile is still on disk with the recorded size and checksum
+     * @param record String[] containing the manifest record of the tile
+     * @return boolean true if the tile verifies
+     */
+    private boolean verify(String[] record) {
+
+        Path tilePath = DOWNLOAD_PATH.resolve(String.format("%s.%s", record[1], IMAGE_FORMAT));
+        try {
+            return Files.size(tilePath) == Long.parseLong(record[2])
+                && checksum(tilePath) == Long.parseLong(record[3]);
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the records of a previous run, the last record for each tile wins
+     */
+    private void read() {
+
+        if (!Files.exists(MANIFEST_PATH)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(MANIFEST_PATH, StandardCharsets.UTF_8)) {
+                String[] record = line.split("\t", -1);
+                if (record.length == 6) {
+                    this.records.put(record[1], record);
+                }
+            }
+        } catch (IOException ioe) {
+            System.out.println("Job manifest could not be read, downloading every tile: " + ioe);
+            this.records.clear();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.maxar.MGPSDK;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Process wide latency histogram for each request type (GetFeature, GetMap, GetTile...), recording
+ * the time between sending a request and receiving the headers of a successful response. Buckets
+ * grow geometrically by {@value #BUCKET_GROWTH}, so percentiles are accurate to within 10% from a
+ * millisecond up to several minutes in a fixed amount of memory. Counts are halved every
+ * {@value #DECAY_SAMPLES} samples so percentiles follow current conditions
+ */
+class LatencyHistogram {
+
+    static final double BUCKET_GROWTH = 1.1;
+    //Fewest samples before percentiles are reported
+    static final int MIN_SAMPLES = 20;
+    static final int DECAY_SAMPLES = 1000;
+    private static final int BUCKETS = 160;
+    private static final ConcurrentHashMap<String, LatencyHistogram> HISTOGRAMS =
+        new ConcurrentHashMap<>();
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private int sinceDecay;
+
+    /**
+     * Records the latency of a response in the histogram of its request type. Unsuccessful
+     * responses and requests without a type are ignored
+     * @param response Response returned by the server
+     */
+    static void record(Response response) {
+
+        if (!response.isSuccessful()) {
+            return;
+        }
+        String requestType = requestType(response.request());
+        if (requestType != null) {
+            HISTOGRAMS.computeIfAbsent(requestType, type -> new LatencyHistogram())
+                .add(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+        }
+    }
+
+    /**
+     * Gets a latency percentile of a request type
+     * @param requestType String containing the request type
+     * @param percentile double containing the percentile, between 0 and 100
+     * @return long containing the latency in milliseconds, or -1 if too few requests of the type
+     * have been recorded
+     */
+    static long percentile(String requestType, double percentile) {
+
+        LatencyHistogram histogram = requestType != null
+            ? HISTOGRAMS.get(requestType.toLowerCase(Locale.ROOT)) : null;
+        return histogram != null ? histogram.valueAt(percentile) : -1;
+    }
+
+    /**
+     * Gets the request type of a request from its <code>request</code> query parameter
+     * @param request Request sent
+     * @return String containing the lower case request type, or null if it has none
+     */
+    static String requestType(Request request) {
+
+        String requestType = request != null ? request.url().queryParameter("request") : null;
+        return requestType != null ? requestType.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Adds a sample to the histogram
+     * @param latencyMillis long containing the latency in milliseconds
+     */
+    synchronized void add(long latencyMillis) {
+
+        int bucket = latencyMillis < 1 ? 0 : (int) Math.min(BUCKETS - 1,
+            Math.floor(Math.log(latencyMillis) / Math.log(BUCKET_GROWTH)) + 1);
+        this.counts[bucket]++;
+        this.total++;
+        if (++this.sinceDecay >= DECAY_SAMPLES) {
+            this.total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                this.counts[i] /= 2;
+                this.total += this.counts[i];
+            }
+            this.sinceDecay = 0;
+        }
+    }
+
+    /**
+     * Gets the upper bound of the bucket a percentile falls in
+     * @param percentile double containing the percentile, between 0 and 100
+     * @return long containing the latency in milliseconds, or -1 if there are too few samples
+     */
+    synchronized long valueAt(double percentile) {
+
+        if (this.total < MIN_SAMPLES) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(this.total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return (long) Math.ceil(Math.pow(BUCKET_GROWTH, i));
+            }
+        }
+        return (long) Math.ceil(Math.pow(BUCKET_GROWTH, BUCKETS - 1));
+    }
+}
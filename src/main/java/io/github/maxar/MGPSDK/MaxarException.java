@@ -0,0 +1,28 @@
+package io.github.maxar.MGPSDK;
+
+/**
+ * Base class of every failure the SDK reports while talking to the Maxar APIs or writing their
+ * results. Unchecked, so it propagates through the blocking methods as is and through the
+ * asynchronous methods as the cause of the <code>CompletionException</code> their futures
+ * complete with. Catching it lets a long running process recover from a failed call instead of
+ * restarting
+ */
+public class MaxarException extends RuntimeException {
+
+    /**
+     * Constructor for <code>MaxarException</code>
+     * @param message String containing the detail message
+     */
+    public MaxarException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor for <code>MaxarException</code>
+     * @param message String containing the detail message
+     * @param cause Throwable that caused the failure
+     */
+    public MaxarException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
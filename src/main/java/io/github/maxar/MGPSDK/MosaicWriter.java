@@ -0,0 +1,166 @@
+package io.github.maxar.MGPSDK;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Stitches the <code>c{col}_r{row}</code> chips written by {@link Streaming#getFullResImage()}
+ * into a single tiled TIFF. Only the chips of the planned grid are read, other files in the
+ * directory are ignored. Chips are read one at a time as the TIFF writer encodes each tile, so
+ * the mosaic is never held in memory. Mosaics that may not fit in a classic TIFF are written as
+ * a BigTIFF. A world file is written next to the mosaic when the grid georeference is known
+ */
+class MosaicWriter {
+
+    //Offsets of a classic TIFF are 32 bit
+    static final long CLASSIC_TIFF_LIMIT = 1L << 32;
+
+    /**
+     * <code>MosaicWriter</code> can not be instantiated
+     * @throws UnsupportedOperationException always
+     */
+    MosaicWriter() {
+        throw new UnsupportedOperationException("MosaicWriter can not be instantiated");
+    }
+
+    /**
+     * Stitches the planned chips of a grid into <code>{tileDirectory}/{fileName}.tif</code>.
+     * Planned chips missing from the directory are left empty
+     * @param tileDirectory Path containing the chips
+     * @param imageFormat String containing the chip file extension
+     * @param fileName String containing the mosaic filename without extension
+     * @param cols int containing the number of columns of the grid
+     * @param rows int containing the number of rows of the grid
+     * @param tileKeys Set&lt;String&gt; containing the c{col}_r{row} key of every planned chip
+     * @param geoTransform double[] containing the upper left x, upper left y, pixel width and pixel
+     * height of the grid, or null if no world file should be written
+     * @param crs CoordinateReferenceSystem of the grid with x as the first axis, or null if unknown.
+     * Required along with <code>geoTransform</code> for mosaics over 4GB
+     * @return Path of the written mosaic
+     * @throws IOException if a chip can not be read or the mosaic can not be written
+     * @throws IllegalArgumentException if none of the planned chips are in the directory, or the
+     * mosaic needs a BigTIFF but is not georeferenced
+     */
+    static Path createMosaic(Path tileDirectory, String imageFormat, String fileName, int cols,
+        int rows, Set<String> tileKeys, double[] geoTransform, CoordinateReferenceSystem crs)
+        throws IOException, IllegalArgumentException {
+
+        Path firstTile = null;
+        for (String key : tileKeys) {
+            Path chip = tileDirectory.resolve(key + "." + imageFormat);
+            if (Files.exists(chip)) {
+                firstTile = chip;
+                break;
+            }
+        }
+        if (firstTile == null) {
+            throw new IllegalArgumentException("No tiles found to mosaic in " + tileDirectory);
+        }
+        BufferedImage reference = ImageIO.read(firstTile.toFile());
+        if (reference == null) {
+            throw new IOException("Unable to decode tile " + firstTile);
+        }
+        long width = (long) cols * reference.getWidth();
+        long height = (long) rows * reference.getHeight();
+        //Compression is not counted on, the mosaic may hold imagery that does not compress
+        boolean bigTiff = width * height * reference.getColorModel().getPixelSize() / 8
+            >= CLASSIC_TIFF_LIMIT;
+        if (bigTiff && (geoTransform == null || crs == null)) {
+            throw new IllegalArgumentException(String.format("A %sx%s pixel mosaic may exceed the "
+                + "4GB TIFF limit and can only be written as a georeferenced BigTIFF", width, height));
+        }
+        TileGridImage mosaic = new TileGridImage(cols, rows, reference.getWidth(),
+            reference.getHeight(), reference, (col, row) -> {
+                String key = "c" + col + "_r" + row;
+                if (!tileKeys.contains(key)) {
+                    return null;
+                }
+                File chip = tileDirectory.resolve(key + "." + imageFormat).toFile();
+                return chip.exists() ? ImageIO.read(chip) : null;
+            });
+
+        Path mosaicPath = tileDirectory.resolve(fileName + ".tif");
+        if (bigTiff) {
+            ReferencedEnvelope envelope = new ReferencedEnvelope(geoTransform[0],
+                geoTransform[0] + width * geoTransform[2], geoTransform[1] - height * geoTransform[3],
+                geoTransform[1], crs);
+            GeoTiffTileWriter.writeGeoTiff(mosaic, envelope, mosaicPath, true);
+        } else {
+            writeTiff(mosaic, mosaicPath);
+        }
+        if (geoTransform != null) {
+            writeWorldFile(tileDirectory.resolve(fileName + ".tfw"), geoTransform);
+        }
+        return mosaicPath;
+    }
+
+    /**
+     * Encodes a tiled image as a Deflate compressed tiled TIFF, one tile at a time, with the JDK's
+     * classic TIFF writer. The TIFF is written to a temporary file and renamed once complete
+     * @param image RenderedImage to encode
+     * @param path Path to write the TIFF to
+     * @throws IOException if the TIFF can not be written
+     */
+    static void writeTiff(TileGridImage image, Path path) throws IOException {
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+        if (!writers.hasNext()) {
+            throw new IOException("No TIFF ImageWriter available");
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        //TIFF tile dimensions must be multiples of 16, otherwise fall back to strips
+        if (image.getTileWidth() % 16 == 0 && image.getTileHeight() % 16 == 0) {
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(image.getTileWidth(), image.getTileHeight(), 0, 0);
+        }
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType("Deflate");
+
+        Path partPath = path.resolveSibling(path.getFileName() + ".part");
+        Files.deleteIfExists(partPath);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(partPath.toFile())) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes an ESRI world file georeferencing the mosaic. Values are for the center of the upper
+     * left pixel
+     * @param path Path to write the world file to
+     * @param geoTransform double[] containing the upper left x, upper left y, pixel width and pixel
+     * height of the grid
+     * @throws IOException if the world file can not be written
+     */
+    private static void writeWorldFile(Path path, double[] geoTransform) throws IOException {
+
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(path))) {
+            pw.println(String.format(Locale.ROOT, "%.12f", geoTransform[2]));
+            pw.println("0.0");
+            pw.println("0.0");
+            pw.println(String.format(Locale.ROOT, "%.12f", -geoTransform[3]));
+            pw.println(String.format(Locale.ROOT, "%.12f", geoTransform[0] + geoTransform[2] / 2));
+            pw.println(String.format(Locale.ROOT, "%.12f", geoTransform[1] - geoTransform[3] / 2));
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package io.github.maxar.MGPSDK;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import okhttp3.Call;
-import okhttp3.OkHttpClient;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Geometry;
 
 /**
  *  Object generated by {@link Builder} that allows the user to make OGC compliant calls
@@ -39,6 +49,15 @@ abstract class Ogc {
     private final boolean DISPLAY;
     private String paramsImageFormat;
     private String endpoint;
+    private final String DISPATCH_ORDER;
+    private final boolean MOSAIC;
+    private final boolean GEOTIFF_OUTPUT;
+    private final boolean BIG_TIFF;
+    private final boolean VIRTUAL_THREADS;
+    private final int MAX_CONCURRENCY;
+    private final double HEDGE_PERCENTILE;
+    private final double MIN_TILE_OVERLAP;
+    private final boolean VALIDATE_TILES;
 
     /**
      * Grabs the current instance of the {@link Auth} class to pass the token into the calls
@@ -305,6 +324,79 @@ abstract class Ogc {
         this.endpoint = endpoint;
     }
 
+    /**
+     * Gets the order tiles are dispatched in for multithreaded downloads
+     * @return String containing the dispatch order
+     */
+    String getDISPATCH_ORDER() {
+        return DISPATCH_ORDER;
+    }
+
+    /**
+     * Gets boolean indicating whether full resolution tiles are stitched into a single mosaic
+     * @return boolean determining mosaic state
+     */
+    boolean isMOSAIC() {
+        return MOSAIC;
+    }
+
+    /**
+     * Gets boolean indicating whether full resolution downloads are written into a single GeoTIFF
+     * @return boolean determining GeoTIFF output state
+     */
+    boolean isGEOTIFF_OUTPUT() {
+        return GEOTIFF_OUTPUT;
+    }
+
+    /**
+     * Gets boolean indicating whether a single GeoTIFF output is written as a BigTIFF
+     * @return boolean determining BigTIFF state
+     */
+    boolean isBIG_TIFF() {
+        return BIG_TIFF;
+    }
+
+    /**
+     * Gets boolean indicating whether full resolution tiles are downloaded on virtual threads
+     * @return boolean determining virtual thread state
+     */
+    boolean isVIRTUAL_THREADS() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * Gets boolean indicating whether full resolution tiles are decoded before being written
+     * @return boolean determining tile validation state
+     */
+    boolean isVALIDATE_TILES() {
+        return VALIDATE_TILES;
+    }
+
+    /**
+     * Gets the most full resolution tile requests allowed in flight, 0 if not set
+     * @return int containing the maximum concurrency
+     */
+    int getMAX_CONCURRENCY() {
+        return MAX_CONCURRENCY;
+    }
+
+    /**
+     * Gets the latency percentile after which GetMap and GetTile requests are hedged, 0 if not set
+     * @return double containing the hedge percentile
+     */
+    double getHEDGE_PERCENTILE() {
+        return HEDGE_PERCENTILE;
+    }
+
+    /**
+     * Gets the fraction of a full resolution tile the footprint must cover for the tile to be
+     * downloaded, 0 if not set
+     * @return double containing the minimum overlap fraction
+     */
+    double getMIN_TILE_OVERLAP() {
+        return MIN_TILE_OVERLAP;
+    }
+
     /**
      * <p>Builder for new instances of {@link Streaming}</p>
      * <p>No fields are mandatory when {@link #build()} is called. Each <code>Streaming</code> method will
@@ -343,6 +435,15 @@ abstract class Ogc {
         private String downloadPath;
         private String requestType;
         private boolean display;
+        private String dispatchOrder;
+        private boolean mosaic;
+        private boolean geoTiffOutput;
+        private boolean bigTiff;
+        private boolean virtualThreads;
+        private int maxConcurrency;
+        private double hedgePercentile;
+        private double minTileOverlap;
+        private boolean validateTiles;
 
         /**
          * Sets the username. If provided, {@link #password} and {@link #clientId} also need to be used
@@ -449,7 +550,8 @@ abstract class Ogc {
 
         /**
          * Sets the height for an image return. Required for WMS calls
-         * Height is a measure of pixels. Maximum height is 8000. Recommended max is 6000
+         * Height is a measure of pixels. Recommended max is 6000. Heights over 8000 are
+         * downloaded by {@link Ogc#downloadImage()} in chunks stitched into a single GeoTIFF
          * @param height int containing the height value in pixels
          * @return {@link Builder}
          */
@@ -460,7 +562,8 @@ abstract class Ogc {
 
         /**
          * Sets the width for an image return. Required for WMS call
-         * Width is a measure of pixels. Maximum width is 8000. Recommended max is 6000
+         * Width is a measure of pixels. Recommended max is 6000. Widths over 8000 are
+         * downloaded by {@link Ogc#downloadImage()} in chunks stitched into a single GeoTIFF
          * @param width int containing the height value in pixels
          * @return {@link Builder}
          */
@@ -590,6 +693,126 @@ abstract class Ogc {
             return self();
         }
 
+        /**
+         * Sets the order tiles are requested in for multithreaded downloads such as
+         * {@link Streaming#getFullResImage()}. Tiles are dispatched along a space filling curve so
+         * that neighbouring tiles are fetched close together and a partial download covers a
+         * contiguous area. Options include:
+         * <ul>
+         *     <li>hilbert (default)</li>
+         *     <li>zorder</li>
+         *     <li>rowmajor</li>
+         * </ul>
+         * @param dispatchOrder String containing the desired order
+         * @return {@link Builder}
+         */
+        public T dispatchOrder(String dispatchOrder) {
+            this.dispatchOrder = dispatchOrder;
+            return self();
+        }
+
+        /**
+         * Sets the boolean true for whether the tiles downloaded by
+         * {@link Streaming#getFullResImage()} are stitched into a single tiled TIFF mosaic once
+         * the download completes. Tiles are streamed into the mosaic one at a time so outputs of
+         * any size can be built
+         * @return {@link Builder}
+         */
+        public T mosaic() {
+            this.mosaic = true;
+            return self();
+        }
+
+        /**
+         * Sets the boolean true for whether {@link Streaming#getFullResImage()} writes every chip
+         * straight into a single tiled, georeferenced GeoTIFF as it arrives instead of writing
+         * individual tile files. Chips are still requested in the {@link #imageFormat(String)}
+         * format. An interrupted GeoTIFF download can not be resumed, every tile is downloaded again
+         * @return {@link Builder}
+         */
+        public T geoTiffOutput() {
+            this.geoTiffOutput = true;
+            return self();
+        }
+
+        /**
+         * Sets the boolean true for whether the single GeoTIFF written by
+         * {@link #geoTiffOutput()} is a BigTIFF. Required for outputs larger than 4GB. Implies
+         * {@link #geoTiffOutput()}
+         * @return {@link Builder}
+         */
+        public T bigTiff() {
+            this.geoTiffOutput = true;
+            this.bigTiff = true;
+            return self();
+        }
+
+        /**
+         * Sets the boolean true for whether {@link Streaming#getFullResImage()} runs every tile on
+         * its own virtual thread instead of a pool of {@link #threadNumber(int)} threads. The
+         * thread number still limits the number of requests in flight. Requires JDK 21 or later,
+         * on older JVMs the thread pool is used
+         * @return {@link Builder}
+         */
+        public T virtualThreads() {
+            this.virtualThreads = true;
+            return self();
+        }
+
+        /**
+         * Sets the boolean true for whether {@link Streaming#getFullResImage()} decodes every tile
+         * before writing it. Tiles that do not decode, such as truncated images or error pages
+         * returned with a 200, are counted as failed instead of being written. Decoding runs on
+         * its own threads between the download and the disk, so it only slows the download down
+         * when it can not keep up
+         * @return {@link Builder}
+         */
+        public T validateTiles() {
+            this.validateTiles = true;
+            return self();
+        }
+
+        /**
+         * Sets the most tile requests {@link Streaming#getFullResImage()} may have in flight.
+         * Downloads start at {@link #threadNumber(int)} requests in flight and adapt from there,
+         * growing while latency holds steady and backing off on throttling (429), server errors
+         * and rising latency. Defaults to four times the thread number
+         * @param maxConcurrency int containing the maximum number of requests in flight
+         * @return {@link Builder}
+         */
+        public T maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return self();
+        }
+
+        /**
+         * Sets the latency percentile after which GetMap and GetTile requests are hedged. If a
+         * request has not returned by that percentile of recent requests of its type, a duplicate
+         * is sent and whichever returns first is used, the other is cancelled. Cuts tail latency
+         * for interactive use at the cost of a few extra requests, at most 10% more. 95 is a good
+         * starting point
+         * @param percentile double containing the percentile, at least 0 and less than 100. 0
+         * turns hedging off
+         * @return {@link Builder}
+         */
+        public T hedgeRequests(double percentile) {
+            this.hedgePercentile = percentile;
+            return self();
+        }
+
+        /**
+         * Sets the fraction of a tile the feature's footprint must cover for
+         * {@link Streaming#getFullResImage()} to download it. Tiles are always culled against the
+         * footprint itself, by default any tile touching it is kept. Raising the fraction drops
+         * sliver tiles along the edges of the strip that hold almost no imagery
+         * @param fraction double containing the minimum overlap, between 0 and 1
+         * @return {@link Builder}
+         */
+        public T minTileOverlap(double fraction) {
+            this.minTileOverlap = fraction;
+            return self();
+        }
+
         /**
          * Called at the end of the chained builder method. Used to return a built child
          * object for making OGC calls
@@ -630,78 +853,311 @@ abstract class Ogc {
         this.downloadPath = builder.downloadPath;
         this.REQUEST_TYPE = builder.requestType;
         this.DISPLAY = builder.display;
+        this.DISPATCH_ORDER = TileScheduler.validateDispatchOrder(builder.dispatchOrder);
+        this.MOSAIC = builder.mosaic;
+        this.GEOTIFF_OUTPUT = builder.geoTiffOutput;
+        this.BIG_TIFF = builder.bigTiff;
+        this.VIRTUAL_THREADS = builder.virtualThreads;
+        this.MAX_CONCURRENCY = builder.maxConcurrency;
+        this.HEDGE_PERCENTILE = RequestHedger.validatePercentile(builder.hedgePercentile);
+        this.MIN_TILE_OVERLAP = TilePlan.validateOverlap(builder.minTileOverlap);
+        this.VALIDATE_TILES = builder.validateTiles;
+    }
+
+    /**
+     * Limits the rate of requests the SDK sends to an endpoint, for every SDK instance in the JVM.
+     * Limits can be set per endpoint and per request type, either of which can be null to match
+     * all of them. A request is paced by the most specific limit that matches it. Blocking calls
+     * wait for their turn, asynchronous calls are scheduled without holding a thread
+     * @param endpoint String containing the endpoint: "streaming", "basemaps", "analytics" or null
+     * @param requestType String containing the request type, for example "GetFeature", "GetMap" or
+     * "GetTile", or null
+     * @param requestsPerSecond double containing the sustained rate, 0 removes the limit
+     * @param burst int containing the number of requests that may be sent at once after a pause
+     * @throws IllegalArgumentException if the endpoint is not recognized
+     */
+    public static void setRateLimit(String endpoint, String requestType, double requestsPerSecond,
+        int burst) throws IllegalArgumentException {
+        RateLimiter.configure(endpoint, requestType, requestsPerSecond, burst);
     }
 
     /**
      * Searches using the WFS method
      * @return String containing the GeoJson result
      * @throws IllegalArgumentException if CQL filter fails check, or if builder parameters are incorrect
+     * @throws MaxarException if the search fails
      */
     public String searchToString() {
         Wfs wfs = new Wfs(this);
         if (this.getFilter() != null) {
             OgcUtils.cqlChecker(this.getFilter());
         }
-        Response wfsResults = wfs.search();
-        String results = null;
-        try {
+        try (Response wfsResults = wfs.search()) {
             assert wfsResults.body() != null;
-            results = wfsResults.body().string();
-        } catch (IOException e) {
-            results = "okHttp3 exception. Please try again";
+            return wfsResults.body().string();
+        } catch (IOException ioe) {
+            throw new TransportException("Search results could not be read", ioe);
         }
-        return results;
     }
 
     /**
      * Searches using the WMS method. API returns a blob containing the image result. An image can
      * be built and downloaded using {@link Builder#download()} or displayed using
      * {@link Builder#display()}. Otherwise, method will return a String containing the
-     * blob result
+     * blob result. Images wider or taller than 8000 pixels are split into a grid of GetMap
+     * requests fetched in parallel and stitched into a single GeoTIFF as they arrive, these must
+     * be downloaded with {@link Builder#download()}
      * @return String containing image blob result or status of download / display
      * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails or the image can not be written
      */
     public String downloadImage() throws IllegalArgumentException {
 
-        Wms wms = new Wms(this);
-        String result;
-        int height = this.getHEIGHT();
-        int width = this.getWIDTH();
         OgcUtils.validateImageFormat(this);
         ///If legacy ID
         if (this.getLEGACY_ID() != null) {
-            String legacyId = this.getLEGACY_ID();
-            String URL = "https://api.discover.digitalglobe.com/show?id=" + legacyId;
-            OkHttpClient client = new OkHttpClient().newBuilder().build();
-            Request okRequest = new Request.Builder()
-                .url(URL)
-                .build();
-            Call call = client.newCall(okRequest);
-            Response response = null;
-            try {
-                response = call.execute();
-            } catch (IOException ioe) {
-                System.out.println("okHttp3 exception: " + ioe + " please try again");
-                System.exit(-1);
+            return OgcUtils.handleImageReturn(this, this.legacyImageResponse());
+        } else {
+            this.validateImageDownload();
+            if (ChunkedImage.isChunked(this)) {
+                return ChunkedImage.download(this);
             }
+            return new Wms(this).returnImage();
+        }
+    }
+
+    /**
+     * Requests the full image of a legacy ID from api.discover.digitalglobe.com
+     * @return Response containing the image
+     * @throws MaxarException if the request fails
+     */
+    private Response legacyImageResponse() {
+
+        String URL = "https://api.discover.digitalglobe.com/show?id=" + this.getLEGACY_ID();
+        Request okRequest = new Request.Builder()
+            .url(URL)
+            .build();
+        Response response;
+        try {
+            response = new RetryPolicy().execute(okRequest,
+                () -> OgcUtils.execute(OgcUtils.httpClient(), okRequest));
+        } catch (IOException ioe) {
+            throw new TransportException("Request to " + okRequest.url() + " failed", ioe);
+        }
+        return OgcUtils.checkResponse(response);
+    }
+
+    /**
+     * Requests an image using the WMS method, or the legacy image if
+     * {@link Builder#legacyId(String)} is set, for the in memory image methods
+     * @return Response containing the encoded image, to be closed by the caller
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails
+     */
+    private Response imageResponse() throws IllegalArgumentException {
+
+        OgcUtils.validateImageFormat(this);
+        if (this.getLEGACY_ID() != null) {
+            return this.legacyImageResponse();
+        }
+        this.validateImageDownload();
+        if (ChunkedImage.isChunked(this)) {
+            throw new IllegalArgumentException(String.format("In memory images are limited to %s "
+                + "pixels, use downloadImage() for larger images", ChunkedImage.MAX_SIZE));
+        }
+        return new Wms(this).returnImageResponse();
+    }
+
+    /**
+     * Requests an image using the WMS method and returns the encoded image without writing it to
+     * disk. {@link Builder#download()} and {@link Builder#display()} are ignored
+     * @return byte[] containing the image encoded in the {@link Builder#imageFormat(String)} format
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails
+     */
+    public byte[] getImageBytes() throws IllegalArgumentException {
+
+        try (Response response = this.imageResponse()) {
             assert response.body() != null;
-            InputStream picture = response.body().byteStream();
-            return OgcUtils.handleImageReturn(this, response);
+            return response.body().bytes();
+        } catch (IOException ioe) {
+            throw new TransportException("Image could not be read from the response", ioe);
+        }
+    }
 
-        } else {
-            if (this.getBbox() == null || this.getIMAGE_FORMAT() == null || ((Number) height).doubleValue() == 0 || ((Number) width).doubleValue() == 0) {
-                throw new IllegalArgumentException("Downloads must have a bbox an image format a height and a width");
-            } else {
-                OgcUtils.validateBbox(this);
-                if (width < 0 || width > 8000) {
-                    throw new IllegalArgumentException("Invalid value for width parameter (max 8000)");
-                }
-                if (height < 0 || height > 8000) {
-                    throw new IllegalArgumentException("Invalid value for height parameter (max 8000)");
-                }
-                return wms.returnImage();
+    /**
+     * Requests an image using the WMS method and reads the encoded image into a buffer taken from
+     * a pool, so chips can be processed without writing them to disk or allocating a new array for
+     * each one. {@link Builder#download()} and {@link Builder#display()} are ignored
+     * @param pool {@link ImageBufferPool} the buffer is taken from. Give the buffer back with
+     * {@link ImageBufferPool#release(ByteBuffer)} once it has been processed
+     * @return ByteBuffer positioned at the start of the image and limited to its end
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails
+     */
+    public ByteBuffer getImageBuffer(ImageBufferPool pool) throws IllegalArgumentException {
+
+        Response response = this.imageResponse();
+        try {
+            assert response.body() != null;
+            return pool.read(response.body());
+        } catch (IOException ioe) {
+            throw new TransportException("Image could not be read from the response", ioe);
+        }
+    }
+
+    /**
+     * Requests an image using the WMS method and decodes it in memory. The encoded image is read
+     * into a pooled buffer and decoded straight from it, no temporary file is written.
+     * {@link Builder#download()} and {@link Builder#display()} are ignored
+     * @return BufferedImage containing the decoded image
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails or the image can not be decoded
+     */
+    public BufferedImage getImage() throws IllegalArgumentException {
+
+        ByteBuffer buffer = this.getImageBuffer(OgcUtils.DECODE_BUFFERS);
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(buffer.array(),
+                buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+            if (image == null) {
+                throw new MaxarException("No decoder available for image format "
+                    + this.getIMAGE_FORMAT());
             }
+            return image;
+        } catch (IOException ioe) {
+            throw new MaxarException("Image could not be decoded", ioe);
+        } finally {
+            OgcUtils.DECODE_BUFFERS.release(buffer);
+        }
+    }
+
+    /**
+     * Requests an image using the WMS method and returns its pixels. Same as {@link #getImage()}
+     * without the color model
+     * @return Raster containing the decoded pixels
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails or the image can not be decoded
+     */
+    public Raster getRaster() throws IllegalArgumentException {
+        return this.getImage().getRaster();
+    }
+
+    /**
+     * Requests an image using the WMS method and returns it as a georeferenced coverage covering
+     * the {@link Builder#bbox(String)} in the {@link Builder#srsname(String)} projection
+     * (EPSG:4326 if not set), with longitude / x as the first axis
+     * @return GridCoverage2D containing the decoded image and its envelope
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails or the image can not be decoded
+     */
+    public GridCoverage2D getCoverage() throws IllegalArgumentException {
+
+        if (this.getBbox() == null) {
+            throw new IllegalArgumentException("Coverages must have a bbox");
+        }
+        BufferedImage image = this.getImage();
+        //The SDK's bboxes are miny, minx, maxy, maxx in every projection
+        String[] bboxList = this.getBbox().split(",");
+        String srsname = this.getSrsname() != null ? this.getSrsname() : "EPSG:4326";
+        ReferencedEnvelope envelope = new ReferencedEnvelope(
+            Double.parseDouble(bboxList[1].trim()), Double.parseDouble(bboxList[3].trim()),
+            Double.parseDouble(bboxList[0].trim()), Double.parseDouble(bboxList[2].trim()),
+            OgcUtils.decodeCrs(srsname, true));
+        String name = this.getFileName() != null ? this.getFileName() : "image";
+        return new GridCoverageFactory().create(name, image, envelope);
+    }
+
+    /**
+     * Asynchronous version of {@link #downloadImage()}. Builder parameters are validated before
+     * returning, the request itself is sent through the OkHttp dispatcher so the calling thread is
+     * never blocked
+     * @return CompletableFuture completed with the image blob result or status of download / display,
+     * or exceptionally with the {@link MaxarException} {@link #downloadImage()} would have thrown
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    public CompletableFuture<String> downloadImageAsync() throws IllegalArgumentException {
+
+        OgcUtils.validateImageFormat(this);
+        if (this.getLEGACY_ID() != null) {
+            Request okRequest = new Request.Builder()
+                .url("https://api.discover.digitalglobe.com/show?id=" + this.getLEGACY_ID())
+                .build();
+            return new RetryPolicy().executeAsync(okRequest, () -> OgcUtils.enqueue(okRequest))
+                .handle((response, throwable) -> {
+                    if (throwable != null) {
+                        throw OgcUtils.asMaxarException(okRequest, throwable);
+                    }
+                    return OgcUtils.handleImageReturn(this, OgcUtils.checkResponse(response));
+                });
+        }
+        this.validateImageDownload();
+        if (ChunkedImage.isChunked(this)) {
+            return ChunkedImage.downloadAsync(this);
+        }
+        return new Wms(this).returnImageAsync();
+    }
+
+    /**
+     * Validates the builder parameters of a WMS image download
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private void validateImageDownload() throws IllegalArgumentException {
+
+        int height = this.getHEIGHT();
+        int width = this.getWIDTH();
+        if (this.getBbox() == null || this.getIMAGE_FORMAT() == null || ((Number) height).doubleValue() == 0 || ((Number) width).doubleValue() == 0) {
+            throw new IllegalArgumentException("Downloads must have a bbox an image format a height and a width");
         }
+        OgcUtils.validateBbox(this);
+        if (width < 0) {
+            throw new IllegalArgumentException("Invalid value for width parameter");
+        }
+        if (height < 0) {
+            throw new IllegalArgumentException("Invalid value for height parameter");
+        }
+    }
+
+    /**
+     * Validates the builder parameters of a GetFeature search and creates its WFS request
+     * @return {@link Wfs} for the search
+     * @throws UnsupportedOperationException if a request type other than GetFeature is set
+     * @throws IllegalArgumentException if CQL filter fails check
+     */
+    Wfs featureSearch() throws UnsupportedOperationException, IllegalArgumentException {
+
+        if (this.getREQUEST_TYPE() != null) {
+            throw new UnsupportedOperationException("When performing a request other than "
+                + "GetFeature, searchToString() must be used");
+        }
+        Wfs wfs = new Wfs(this);
+        if (this.getFilter() != null) {
+            OgcUtils.cqlChecker(this.getFilter());
+        }
+        return wfs;
+    }
+
+    /**
+     * Parses a GetFeature response into a feature collection
+     * @param wfsResults Response returned by the search
+     * @param collectionType Class of the endpoint's feature collection
+     * @param <C> feature collection type
+     * @return feature collection containing the GeoJson result
+     * @throws TransportException if the response body can not be read
+     */
+    static <C> C parseFeatureCollection(Response wfsResults, Class<C> collectionType) {
+
+        String stringWfsResults;
+        try (wfsResults) {
+            assert wfsResults.body() != null;
+            stringWfsResults = wfsResults.body().string();
+        } catch (IOException ioe) {
+            throw new TransportException("Search results could not be read", ioe);
+        }
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Geometry.class, new GeometryTypeAdapter())
+            .create();
+        return gson.fromJson(stringWfsResults, collectionType);
     }
 
     /**
@@ -769,7 +1225,7 @@ abstract class Ogc {
             this.setSrsname("EPSG:4326");
         }
         HashMap<String, String> wmtsList = this.getTileList();
-        for (Map.Entry<String, String> set : wmtsList.entrySet()) {
+        for (Map.Entry<String, String> set : TileScheduler.order(wmtsList, this.getDISPATCH_ORDER())) {
             String[] params = set.getKey().replaceAll("\\[", "")
                 .replaceAll("\\]", "").replaceAll(" ", "").split(",");
             Response response = wmts.wmtsGetTile(params[0], params[1], params[2]);
@@ -778,11 +1234,66 @@ abstract class Ogc {
         }
     }
 
+    /**
+     * Seeds a local tile cache with every WMTS tile covering the bbox for each zoom level between
+     * <code>minZoom</code> and <code>maxZoom</code>. Tiles are written to
+     * <code>{downloadPath}/{zoom}/{row}_{col}.{format}</code>, tiles already in the cache are
+     * skipped and fully seeded zoom levels are checkpointed so an interrupted seed can be rerun to
+     * resume. Requires {@link Builder#bbox(String)}, {@link Builder#imageFormat(String)} and
+     * {@link Builder#threadNumber(int)}
+     * @param minZoom int containing the first zoom level to seed
+     * @param maxZoom int containing the last zoom level to seed
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    public void seedTiles(int minZoom, int maxZoom) throws IllegalArgumentException {
+
+        if (this.getBbox() == null) {
+            throw new IllegalArgumentException("Seeding tiles requires a bbox");
+        }
+        if (((Number) this.getTHREAD_NUMBER()).doubleValue() == 0) {
+            throw new IllegalArgumentException("Must provide number of threads to use");
+        }
+        if (this.getIMAGE_FORMAT() == null) {
+            throw new IllegalArgumentException("Must provide an image format");
+        }
+        if (minZoom < 0 || maxZoom < minZoom) {
+            throw new IllegalArgumentException("Invalid zoom range " + minZoom + " - " + maxZoom);
+        }
+        if (this.getSrsname() == null) {
+            this.setSrsname("EPSG:4326");
+        }
+        if (this.getSrsname().equals("EPSG:4326") && maxZoom > 21) {
+            throw new IllegalArgumentException("Zoom levels for EPSG:4326 should be between 0 - 21");
+        }
+        OgcUtils.validateBbox(this);
+        OgcUtils.validateImageFormat(this);
+        if (this.getDownloadPath() != null) {
+            try {
+                Paths.get(this.getDownloadPath());
+            } catch (InvalidPathException ipe) {
+                throw new IllegalArgumentException("Path " + this.getDownloadPath() + " not a valid path");
+            }
+        } else {
+            this.setDownloadPath(String.format("%s/Downloads/%s", System.getProperty("user.home"),
+                "TileCache"));
+        }
+
+        System.out.println("Starting tile seed...");
+        long failedTiles = new TileSeeder(this, minZoom, maxZoom).seed();
+        System.out.println("Seed complete!");
+        System.out.println("Number of failed tiles: " + failedTiles);
+        System.out.println("Tile cache located at " + this.getDownloadPath());
+    }
+
     /**
      * Runs a batch of WMS requests from a csv file. Csv file should be a list of yx order
      * bboxes. Filename and location must be set with {@link Builder#fileName(String)}
      * {@link Builder#downloadPath(String)} Projection should be noted with
-     * {@link Builder#srsname(String)} if not EPSG:4326. Each bbox should be on its own line
+     * {@link Builder#srsname(String)} if not EPSG:4326. Each bbox should be on its own line.
+     * Up to {@link Builder#threadNumber(int)} requests run at once and each image is written to
+     * <code>{csv directory}/{csv name}/{line}.{format}</code>. Rerunning an interrupted batch
+     * resumes after the last completed line, bboxes that still fail are written to
+     * <code>{csv name}-failed.csv</code> next to the csv
      * @throws IllegalArgumentException if builder parameters are not set correctly
      */
     public void getImageFromCsv() {
@@ -4,6 +4,10 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -12,34 +16,67 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.apache.commons.io.FileUtils;
+import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 
 /**
  * Collection of static helper functions for {@link Streaming} to perform arithmetic or repetitive functions
  */
 class OgcUtils {
 
+    private static final ConcurrentHashMap<String, CoordinateReferenceSystem> CRS_CACHE =
+        new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, MathTransform> TRANSFORM_CACHE =
+        new ConcurrentHashMap<>();
+    private static final Method VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+    //Shared by every call so connections are pooled across requests
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient()
+        .newBuilder()
+        .connectTimeout(30, TimeUnit.SECONDS)
+        .readTimeout(30, TimeUnit.SECONDS)
+        .writeTimeout(30, TimeUnit.SECONDS)
+        .dispatcher(asyncDispatcher(64))
+        .build();
+    //Requests in flight when a download does not set a thread number
+    static final int DEFAULT_THREADS = 4;
+    //Buffers images are read into before being decoded in memory
+    static final ImageBufferPool DECODE_BUFFERS = new ImageBufferPool(
+        Runtime.getRuntime().availableProcessors());
+
     /**
      * <code>OgcUtils</code> can not be instantiated
      * @throws UnsupportedOperationException always
@@ -49,48 +86,317 @@ class OgcUtils {
     }
 
     /**
-     * Sends completed API calls for any endpoint and handles any API errors for the user
+     * Sends completed API calls for any endpoint and handles any API errors for the user.
+     * Transient failures are retried according to {@link RetryPolicy}
      * @param auth instance of the <code>Auth</code> class for authentication
      * @param url URL built from the base URL and sub endpoint
      * @param params parameters that get passed and added to the URL
      * @return Response object containing status code and body
+     * @throws TransportException if the call fails without a response
+     * @throws ApiException if the API returns an unsuccessful status
      */
     static Response handleRequest(Auth auth, String url, HashMap<String, String> params) {
+        return handleRequest(auth, url, params, 0);
+    }
+
+    /**
+     * Sends completed API calls for any endpoint and handles any API errors for the user.
+     * Transient failures are retried according to {@link RetryPolicy}, GetMap and GetTile calls
+     * are hedged by {@link RequestHedger} if a percentile is given
+     * @param auth instance of the <code>Auth</code> class for authentication
+     * @param url URL built from the base URL and sub endpoint
+     * @param params parameters that get passed and added to the URL
+     * @param hedgePercentile double containing the latency percentile after which a duplicate
+     * request is sent, 0 to disable hedging
+     * @return Response object containing status code and body
+     * @throws TransportException if the call fails without a response
+     * @throws ApiException if the API returns an unsuccessful status
+     */
+    static Response handleRequest(Auth auth, String url, HashMap<String, String> params,
+        double hedgePercentile) {
 
         String token = auth.refreshToken();
-        //HTTP request
-        OkHttpClient client = new OkHttpClient()
-            .newBuilder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
-            .build();
-        HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(url)).newBuilder();
-        //Build params from querystring
-        if (!params.isEmpty()) {
-            for (Map.Entry<String, String> set : params.entrySet()) {
-                urlBuilder.addQueryParameter(set.getKey(), set.getValue());
-            }
-        }
-        String URL = urlBuilder.build().toString();
+        String URL = buildUrl(url, params).toString();
 //        System.out.println(URL);
         Request getRequest = new Request.Builder()
             .header("Authorization", "Bearer " + token)
             .url(URL)
             .build();
-        Response response = null;
+        Response response;
         try {
-            response = client.newCall(getRequest).execute();
+            response = new RetryPolicy().execute(getRequest,
+                hedgePercentile > 0 && RequestHedger.isHedged(getRequest)
+                    ? () -> RequestHedger.send(getRequest, hedgePercentile, () -> enqueue(getRequest))
+                    : () -> execute(HTTP_CLIENT, getRequest));
         } catch (IOException ioe) {
-            System.out.println("okHttp3 error. Please try again" + ioe);
-            System.exit(-1);
+            throw new TransportException("Request to " + getRequest.url() + " failed", ioe);
         }
+        return checkResponse(response);
+    }
+
+    /**
+     * Checks the status of an API response
+     * @param response Response returned by the API
+     * @return the same Response if its status is 200
+     * @throws ApiException if the status is anything else, the response is closed
+     */
+    static Response checkResponse(Response response) throws ApiException {
+
         if (response.code() != 200) {
-            System.out.printf("error: %s %s", response.code(), response.body());
+            throw ApiException.from(response);
         }
         return response;
     }
 
+    /**
+     * Converts the failure of an asynchronous call into the exception the blocking call would
+     * have thrown
+     * @param request Request that failed
+     * @param throwable Throwable the call's future completed with
+     * @return MaxarException describing the failure
+     */
+    static MaxarException asMaxarException(Request request, Throwable throwable) {
+
+        Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (failure instanceof MaxarException) {
+            return (MaxarException) failure;
+        } else if (failure instanceof IOException) {
+            return new TransportException("Request to " + request.url() + " failed",
+                (IOException) failure);
+        }
+        return new MaxarException("Request to " + request.url() + " failed", failure);
+    }
+
+    /**
+     * Gets the client shared by every call, so batches reuse its pooled connections
+     * @return OkHttpClient shared by the SDK
+     */
+    static OkHttpClient httpClient() {
+        return HTTP_CLIENT;
+    }
+
+    /**
+     * Sends a request on an OkHttp client once the {@link RateLimiter} allows it, blocking the
+     * calling thread. Fails fast while the {@link CircuitBreaker} of the endpoint is open
+     * @param client OkHttpClient sending the request
+     * @param request Request to send
+     * @return Response returned by the server
+     * @throws IOException if the request fails, the circuit is open or the thread is interrupted
+     * while waiting
+     */
+    static Response execute(OkHttpClient client, Request request) throws IOException {
+
+        return CircuitBreaker.execute(request, () -> {
+            RateLimiter.acquire(request);
+            Response response = client.newCall(request).execute();
+            LatencyHistogram.record(response);
+            return response;
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #handleRequest(Auth, String, HashMap)}. The token refresh and
+     * the call run on the OkHttp dispatcher's threads so the caller is never blocked
+     * @param auth instance of the <code>Auth</code> class for authentication
+     * @param url URL built from the base URL and sub endpoint
+     * @param params parameters that get passed and added to the URL
+     * @return CompletableFuture completed with the Response once the call returns
+     */
+    static CompletableFuture<Response> handleRequestAsync(Auth auth, String url,
+        HashMap<String, String> params) {
+        return handleRequestAsync(auth, url, params, 0);
+    }
+
+    /**
+     * Asynchronous version of {@link #handleRequest(Auth, String, HashMap, double)}
+     * @param auth instance of the <code>Auth</code> class for authentication
+     * @param url URL built from the base URL and sub endpoint
+     * @param params parameters that get passed and added to the URL
+     * @param hedgePercentile double containing the latency percentile after which a duplicate
+     * request is sent, 0 to disable hedging
+     * @return CompletableFuture completed with the Response once the call returns, or
+     * exceptionally with a {@link TransportException}, {@link ApiException} or
+     * {@link AuthException} as the blocking call would have thrown
+     */
+    static CompletableFuture<Response> handleRequestAsync(Auth auth, String url,
+        HashMap<String, String> params, double hedgePercentile) {
+
+        HttpUrl httpUrl = buildUrl(url, params);
+        return CompletableFuture.supplyAsync(auth::refreshToken,
+                HTTP_CLIENT.dispatcher().executorService())
+            .thenCompose(token -> {
+                Request getRequest = new Request.Builder()
+                    .header("Authorization", "Bearer " + token)
+                    .url(httpUrl)
+                    .build();
+                return new RetryPolicy().executeAsync(getRequest,
+                    hedgePercentile > 0 && RequestHedger.isHedged(getRequest)
+                        ? () -> RequestHedger.sendAsync(getRequest, hedgePercentile,
+                            () -> enqueue(getRequest))
+                        : () -> enqueue(getRequest))
+                    .handle((response, throwable) -> {
+                        if (throwable != null) {
+                            throw asMaxarException(getRequest, throwable);
+                        }
+                        return checkResponse(response);
+                    });
+            });
+    }
+
+    /**
+     * Enqueues a request on the shared client
+     * @param request Request to send
+     * @return CompletableFuture completed with the Response, or exceptionally if the call fails.
+     * Cancelling the future cancels the call
+     */
+    static CompletableFuture<Response> enqueue(Request request) {
+        return enqueue(HTTP_CLIENT, request);
+    }
+
+    /**
+     * Enqueues a request on an OkHttp client, bridging its callback to a
+     * <code>CompletableFuture</code>. No thread is held while the request waits for a
+     * {@link RateLimiter} permit or is queued by the dispatcher
+     * @param client OkHttpClient whose dispatcher runs the call
+     * @param request Request to send
+     * @return CompletableFuture completed with the Response, or exceptionally if the call fails or
+     * the {@link CircuitBreaker} of the endpoint is open. Cancelling the future cancels the call
+     */
+    static CompletableFuture<Response> enqueue(OkHttpClient client, Request request) {
+        return CircuitBreaker.executeAsync(request, () -> enqueueCall(client, request));
+    }
+
+    /**
+     * Enqueues a request on an OkHttp client without checking its circuit breaker
+     * @param client OkHttpClient whose dispatcher runs the call
+     * @param request Request to send
+     * @return CompletableFuture completed with the Response, or exceptionally if the call fails
+     */
+    private static CompletableFuture<Response> enqueueCall(OkHttpClient client, Request request) {
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+        //Waiting for a rate limit permit is scheduled, not blocked on
+        RateLimiter.acquireAsync(request).thenRun(() -> call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                LatencyHistogram.record(response);
+                if (!future.complete(response)) {
+                    response.close();
+                }
+            }
+        }));
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Creates an OkHttp dispatcher whose calls run on daemon threads, so pending asynchronous
+     * calls never keep the JVM alive
+     * @param maxRequests int containing the maximum number of calls in flight, in total and per host
+     * @return Dispatcher limited to <code>maxRequests</code> concurrent calls
+     */
+    static Dispatcher asyncDispatcher(int maxRequests) {
+
+        ExecutorService executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60,
+            TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "MGPSDK Dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        return dispatcher;
+    }
+
+    /**
+     * Builds a request URL from a base URL and a querystring
+     * @param url String containing the base URL
+     * @param params Map&lt;String, String&gt; containing the query parameters
+     * @return HttpUrl containing the full URL
+     */
+    static HttpUrl buildUrl(String url, Map<String, String> params) {
+
+        HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(url)).newBuilder();
+        //Build params from querystring
+        for (Map.Entry<String, String> set : params.entrySet()) {
+            urlBuilder.addQueryParameter(set.getKey(), set.getValue());
+        }
+        return urlBuilder.build();
+    }
+
+
+    /**
+     * Decodes a projection code, caching the result. EPSG factory lookups are expensive so each
+     * code is only decoded once per JVM
+     * @param crs String containing the projection code. Example: "EPSG:3857"
+     * @return <code>CoordinateReferenceSystem</code> for the code
+     * @throws IllegalArgumentException if the projection code can not be decoded
+     */
+    static CoordinateReferenceSystem decodeCrs(String crs) throws IllegalArgumentException {
+        return decodeCrs(crs, false);
+    }
+
+    /**
+     * Decodes a projection code, caching the result. EPSG factory lookups are expensive so each
+     * code is only decoded once per JVM
+     * @param crs String containing the projection code. Example: "EPSG:3857"
+     * @param longitudeFirst boolean true to force x / longitude as the first axis
+     * @return <code>CoordinateReferenceSystem</code> for the code
+     * @throws IllegalArgumentException if the projection code can not be decoded
+     */
+    static CoordinateReferenceSystem decodeCrs(String crs, boolean longitudeFirst)
+        throws IllegalArgumentException {
+
+        String key = longitudeFirst ? crs + ":xy" : crs;
+        CoordinateReferenceSystem decoded = CRS_CACHE.get(key);
+        if (decoded == null) {
+            try {
+                decoded = CRS.decode(crs, longitudeFirst);
+            } catch (FactoryException e) {
+                throw new IllegalArgumentException("Unable to decode projection " + crs, e);
+            }
+            CRS_CACHE.putIfAbsent(key, decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Finds the <code>MathTransform</code> between two projections, caching the result per
+     * projection pair. <code>MathTransform</code> instances are immutable and thread safe so a
+     * cached transform can be shared by every caller
+     * @param sourceCrs String containing the source projection code
+     * @param targetCrs String containing the target projection code
+     * @return <code>MathTransform</code> from <code>sourceCrs</code> to <code>targetCrs</code>
+     * @throws IllegalArgumentException if no transform can be found
+     */
+    static MathTransform findTransform(String sourceCrs, String targetCrs)
+        throws IllegalArgumentException {
+
+        String key = sourceCrs + ">" + targetCrs;
+        MathTransform transform = TRANSFORM_CACHE.get(key);
+        if (transform == null) {
+            try {
+                transform = CRS.findMathTransform(decodeCrs(sourceCrs), decodeCrs(targetCrs));
+            } catch (FactoryException e) {
+                throw new IllegalArgumentException(String.format("Unable to transform %s to %s",
+                    sourceCrs, targetCrs), e);
+            }
+            TRANSFORM_CACHE.putIfAbsent(key, transform);
+        }
+        return transform;
+    }
 
     /**
      * Validates the image format provided and prepends with image/. API parameter requirement
@@ -206,18 +512,17 @@ class OgcUtils {
      * @param response Response containing the API response
      * @return String containing download / display success message for API blob
      * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the image can not be read or written
      */
     static String handleImageReturn(Ogc ogc, Response response) throws IllegalArgumentException {
 
         assert response.body() != null;
-        InputStream stream = response.body().byteStream();
         if (ogc.isDISPLAY()) {
             BufferedImage image = null;
-            try {
+            try (InputStream stream = response.body().byteStream()) {
                 image = ImageIO.read(stream);
             } catch (IOException ioe) {
-                System.out.println("ImageIO exception: " + ioe + " please try again");
-                System.exit(-1);
+                throw new TransportException("Image could not be read from the response", ioe);
             }
             ImageIcon icon = new ImageIcon(image);
             JLabel label = new JLabel();
@@ -247,23 +552,22 @@ class OgcUtils {
                     throw new IllegalArgumentException(String.format("Path %s not valid.",
                         ogc.getDownloadPath()));
                 }
+                Path file = Paths.get(ogc.getDownloadPath(), filename + "." + format);
                 try {
-                    FileUtils.copyInputStreamToFile(stream, new File(String.format("%s/%s.%s",
-                        ogc.getDownloadPath(), filename, format)));
+                    BodyWriter.write(response.body(), file, null);
                 } catch (IOException ioe) {
-                    System.out.println("FileUtils exception: " + ioe + " please try again");
-                    System.exit(-1);
+                    throw new MaxarException("File could not be downloaded to " + file, ioe);
                 }
                 Path path = Paths.get(String.format("%s/%s",
                     ogc.getDownloadPath(), filename));
                 return String.format("File downloaded to: " + path);
             } else {
+                Path file = Paths.get(System.getProperty("user.home"), "Downloads",
+                    filename + "." + format);
                 try {
-                    FileUtils.copyInputStreamToFile(stream, new File(String.format("%s/Downloads/%s.%s",
-                        System.getProperty("user.home"), filename, format)));
+                    BodyWriter.write(response.body(), file, null);
                 } catch (IOException ioe) {
-                    System.out.println("FileUtils exception: " + ioe + " please try again");
-                    System.exit(-1);
+                    throw new MaxarException("File could not be downloaded to " + file, ioe);
                 }
                 Path path = Paths.get(String.format("%s/Downloads/%s",
                     System.getProperty("user.home"), filename));
@@ -285,10 +589,54 @@ class OgcUtils {
      */
     static int handleMultithreadDownload(HashMap<String, String> multiThreadingMap, Ogc ogc)
     throws IllegalArgumentException {
+        return handleMultithreadDownload(multiThreadingMap, ogc, null, null);
+    }
+
+    /**
+     * Handles multithreaded WMS calls for {@link Streaming#getFullResImage()}. If a
+     * {@link GeoTiffTileWriter} is provided, chips are handed to it as they arrive instead of being
+     * written to individual files, and are dispatched row-major to match the order it encodes in
+     * @param multiThreadingMap HashMap&lt;String,String&gt; containing API URL, col row pairs
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest recording the size and checksum of each written tile, or null
+     * @return int containing the number of failed WMS calls
+     * @throws IllegalArgumentException if builder parameters are not set properly
+     * @throws MaxarException if the download is interrupted
+     */
+    static int handleMultithreadDownload(HashMap<String, String> multiThreadingMap, Ogc ogc,
+        GeoTiffTileWriter geoTiff, JobManifest manifest) throws IllegalArgumentException {
+
+        //Starts at .getThreadNumber() requests in flight and adapts to latency and throttling
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(threadNumber(ogc),
+            maxConcurrency(ogc));
+        //One retry budget for the whole job
+        RetryPolicy retryPolicy = new RetryPolicy();
+        return fetchTiles(multiThreadingMap, ogc, geoTiff, manifest, limiter, retryPolicy);
+    }
 
-        // Create a fixed thread pool with .getThreadNumber() threads
-        ExecutorService executors = Executors.newFixedThreadPool(ogc.getTHREAD_NUMBER());
-        HashMap<String, String> failedRequests = new HashMap<>();
+    /**
+     * Downloads a set of full resolution tiles. Each tile is verified by {@link ChipVerifier} and
+     * retried according to the job's {@link RetryPolicy}, tiles still failing afterwards are
+     * counted as failed. Fetch workers only
+     * read tiles off the network, fetched tiles are decoded and written by a {@link TilePipeline}
+     * so network and disk work overlap
+     * @param multiThreadingMap HashMap&lt;String,String&gt; containing API URL, col row pairs
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest recording the size and checksum of each written tile, or null
+     * @param limiter ConcurrencyLimiter shared by every request of the job
+     * @param retryPolicy RetryPolicy holding the job's retry budget
+     * @return int containing the number of failed WMS calls
+     */
+    private static int fetchTiles(HashMap<String, String> multiThreadingMap, Ogc ogc,
+        GeoTiffTileWriter geoTiff, JobManifest manifest, ConcurrencyLimiter limiter,
+        RetryPolicy retryPolicy) {
+
+        // Create a thread pool as large as the concurrency limit may grow, or one virtual thread
+        // per tile. The limiter decides how many of them have a request in flight
+        ExecutorService executors = downloadExecutor(ogc, maxConcurrency(ogc));
+        Map<String, String> failedRequests = new ConcurrentHashMap<>();
         try {
 
             //Create a CountDownLatch to block the main thread until all API calls have finished
@@ -297,74 +645,72 @@ class OgcUtils {
             //Get auth once for all calls
             String token = ogc.getAUTH().refreshToken();
 
-            String downloadPath = ogc.getDownloadPath();
-
             //Performance measures for user
             double multiple = Math.floor(multiThreadingMap.size() * 0.25);
-            final int[] COUNT = {0};
+            AtomicInteger count = new AtomicInteger();
             AtomicInteger percentage = new AtomicInteger();
 
-            int attempts = 0;
             //Set up the HTTP client
-            OkHttpClient client = new OkHttpClient()
-                .newBuilder()
-                .build();
+            OkHttpClient client = HTTP_CLIENT;
 
-            for (Entry<String, String> entry : multiThreadingMap.entrySet()) {
+            //Decode and write stages, fed by the fetch workers below
+            TilePipeline pipeline = new TilePipeline(ogc, geoTiff, manifest, (key, stored) -> {
+                if (stored) {
+                    if (count.incrementAndGet() % multiple == 0) {
+                        percentage.getAndIncrement();
+                        System.out.println((percentage.get() * 25) + "% complete");
+                    }
+                } else {
+                    failedRequests.put(key, multiThreadingMap.get(key));
+                    if (manifest != null) {
+                        manifest.fail(key);
+                    }
+                }
+                //Decrement the latch count to signal that this tile has finished
+                latch.countDown();
+            });
+
+            //Dispatch along a space filling curve so neighbouring tiles are fetched together
+            String dispatchOrder = geoTiff != null ? TileScheduler.ROW_MAJOR : ogc.getDISPATCH_ORDER();
+            for (Entry<String, String> entry : TileScheduler.order(multiThreadingMap,
+                dispatchOrder)) {
                 executors.execute(() -> {
                     Request getRequest = new Request.Builder()
                         .header("Authorization", "Bearer " + token)
                         .url(entry.getValue())
                         .build();
-                    try (Response response = client.newCall(getRequest).execute()){
-                        if (response.code() == 200) {
-                            COUNT[0]++;
-                            if (COUNT[0] % multiple == 0) {
-                                percentage.getAndIncrement();
-                                System.out.println((percentage.get() * 25) + "% complete");
-                            }
-                            assert response.body() != null;
-                            InputStream file = response.body().byteStream();
-                            try {
-                                FileUtils.copyInputStreamToFile(file, new File(String.format("%s/%s.%s",
-                                    downloadPath, entry.getKey(), ogc.getIMAGE_FORMAT())));
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        } else {
-                            failedRequests.put(entry.getKey(), entry.getValue());
+                    //Only the network is touched here, the tile is stored by the pipeline
+                    ByteBuffer[] chip = new ByteBuffer[1];
+                    try (Response response = retryPolicy.execute(getRequest,
+                        () -> fetchTile(client, getRequest, limiter, pipeline, ogc, chip))) {
+                        if (response.code() != 200) {
+                            pipeline.release(chip[0]);
+                            chip[0] = null;
                         }
-                    } catch (IOException e) {
-                        failedRequests.put(entry.getKey(), entry.getValue());
-                    } finally {
-                        //Decrement the latch count to signal that this API call has finished
-                        latch.countDown();
+                    } catch (IOException | RuntimeException e) {
+                        chip[0] = null;
+                    }
+                    if (chip[0] != null) {
+                        pipeline.submit(entry.getKey(), chip[0]);
+                    } else {
+                        pipeline.fail(entry.getKey());
                     }
                 });
             }
 
-
-
             // Block the main thread until the latch count reaches zero
             try {
                 latch.await();
             } catch (InterruptedException ie) {
-                System.out.println("Latch countdown failed: " + ie + " aborting download");
-                System.exit(-1);
+                Thread.currentThread().interrupt();
+                executors.shutdownNow();
+                pipeline.shutdownNow();
+                throw new MaxarException("Download interrupted", ie);
             }
-
-            // Rerun failed images
-            if (!failedRequests.isEmpty()) {
-                while (attempts < 5) {
-                    attempts++;
-                    System.out.printf("Some image requests failed, retrying failed requests, "
-                        + "retry attempt: %s%n", attempts);
-                    int failed = handleMultithreadDownload(failedRequests, ogc);
-                    if (failed == 0) {
-                        failedRequests.clear();
-                        break;
-                    }
-                }
+            try {
+                pipeline.shutdown(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         } finally {
             executors.shutdown();
@@ -376,17 +722,356 @@ class OgcUtils {
                 Thread.currentThread().interrupt();
             }
         }
-        executors.shutdown();
         return failedRequests.size();
     }
 
     /**
-     * Not yet implemented. Further research needed to determine feasibility. Do not use
+     * Sends one attempt at a tile and reads a successful response into a buffer from the
+     * pipeline, checking it with {@link ChipVerifier}. A tile failing verification is thrown away
+     * as an <code>IOException</code>, so the retry policy requests it again
+     * @param client OkHttpClient sending the request
+     * @param getRequest Request for the tile
+     * @param limiter ConcurrencyLimiter of the job
+     * @param pipeline TilePipeline whose buffers the tile is read into
+     * @param ogc Instance of the {@link Streaming} class
+     * @param chip ByteBuffer[] whose only element is set to the verified tile
+     * @return Response returned for the tile, its body already consumed if it was successful
+     * @throws IOException if the request fails or the tile fails verification
+     */
+    private static Response fetchTile(OkHttpClient client, Request getRequest,
+        ConcurrencyLimiter limiter, TilePipeline pipeline, Ogc ogc, ByteBuffer[] chip)
+        throws IOException {
+
+        Response response = limitedCall(client, getRequest, limiter);
+        if (response.code() != 200 || response.body() == null) {
+            return response;
+        }
+        try (response) {
+            ByteBuffer read = pipeline.read(response.body());
+            try {
+                ChipVerifier.verify(response, read, ogc.getIMAGE_FORMAT());
+            } catch (IOException ioe) {
+                pipeline.release(read);
+                throw ioe;
+            }
+            chip[0] = read;
+        }
+        return response;
+    }
+
+    /**
+     * Reads a successful tile response into memory and checks it with {@link ChipVerifier}, for
+     * tiles downloaded asynchronously
+     * @param response Response returned for the tile
+     * @param imageFormat String containing the requested format
+     * @return Response with the verified tile as an in-memory body, or the response itself if it
+     * was not successful
+     * @throws CompletionException wrapping an IOException if the tile fails verification, so the
+     * retry policy requests it again
+     */
+    private static Response verifiedTile(Response response, String imageFormat) {
+
+        if (response.code() != 200 || response.body() == null) {
+            return response;
+        }
+        try (response) {
+            byte[] bytes = response.body().bytes();
+            ChipVerifier.verify(response, ByteBuffer.wrap(bytes), imageFormat);
+            return response.newBuilder()
+                .body(ResponseBody.create(bytes, response.body().contentType()))
+                .build();
+        } catch (IOException ioe) {
+            throw new CompletionException(ioe);
+        }
+    }
+
+    /**
+     * Sends one attempt at a tile once the circuit breaker, rate and concurrency limiters allow it,
+     * feeding the outcome back into the limiter. The permit is held until the response headers
+     * arrive
+     * @param client OkHttpClient sending the request
+     * @param getRequest Request for the tile
+     * @param limiter ConcurrencyLimiter of the job
+     * @return Response returned for the tile
+     * @throws IOException if the request fails, the circuit is open or the thread is interrupted
+     * while waiting
+     */
+    private static Response limitedCall(OkHttpClient client, Request getRequest,
+        ConcurrencyLimiter limiter) throws IOException {
+        return CircuitBreaker.execute(getRequest, () -> sendLimited(client, getRequest, limiter));
+    }
+
+    /**
+     * Sends one attempt at a tile once the rate and concurrency limiters allow it
+     * @param client OkHttpClient sending the request
+     * @param getRequest Request for the tile
+     * @param limiter ConcurrencyLimiter of the job
+     * @return Response returned for the tile
+     * @throws IOException if the request fails or the thread is interrupted while waiting
+     */
+    private static Response sendLimited(OkHttpClient client, Request getRequest,
+        ConcurrencyLimiter limiter) throws IOException {
+
+        RateLimiter.acquire(getRequest);
+        try {
+            limiter.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request slot");
+        }
+        long sentAtMillis = System.currentTimeMillis();
+        try {
+            Response response = client.newCall(getRequest).execute();
+            LatencyHistogram.record(response);
+            limiter.onResponse(response);
+            return response;
+        } catch (IOException ioe) {
+            limiter.onFailure(System.currentTimeMillis() - sentAtMillis);
+            throw ioe;
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Creates the executor full resolution tiles are downloaded on. If
+     * {@link Ogc.Builder#virtualThreads()} is set and the JVM supports it (JDK 21 or later) every
+     * tile runs on its own virtual thread, otherwise a fixed pool of platform threads is used
+     * @param ogc Instance of the {@link Streaming} class
+     * @param poolSize int containing the number of platform threads to fall back to
+     * @return ExecutorService to run the tile downloads on
+     */
+    static ExecutorService downloadExecutor(Ogc ogc, int poolSize) {
+
+        if (ogc.isVIRTUAL_THREADS()) {
+            if (VIRTUAL_THREAD_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    System.out.println("Virtual thread executor could not be created: " + e);
+                }
+            } else {
+                System.out.printf("Virtual threads require JDK 21 or later, using %s threads%n",
+                    poolSize);
+            }
+        }
+        return Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * Gets the most requests a full resolution download may have in flight once its concurrency
+     * limit has adapted. Defaults to four times the thread number
+     * @param ogc Instance of the {@link Streaming} class
+     * @return int containing the maximum concurrency
+     */
+    static int maxConcurrency(Ogc ogc) {
+        return ogc.getMAX_CONCURRENCY() > 0 ? ogc.getMAX_CONCURRENCY() : threadNumber(ogc) * 4;
+    }
+
+    /**
+     * Gets the number of requests a multithreaded download starts with in flight. Calls that do
+     * not require {@link Ogc.Builder#threadNumber(int)}, such as chunked
+     * {@link Ogc#downloadImage()} calls, default to {@value #DEFAULT_THREADS}
+     * @param ogc Instance of the {@link Streaming} class
+     * @return int containing the thread number
+     */
+    static int threadNumber(Ogc ogc) {
+        return ogc.getTHREAD_NUMBER() > 0 ? ogc.getTHREAD_NUMBER() : DEFAULT_THREADS;
+    }
+
+    /**
+     * Looks up <code>Executors.newVirtualThreadPerTaskExecutor()</code> reflectively so the SDK
+     * still compiles and runs on JDK 17
+     * @return Method creating a virtual thread per task executor, or null before JDK 21
+     */
+    private static Method findVirtualThreadExecutor() {
+
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #handleMultithreadDownload(HashMap, Ogc, GeoTiffTileWriter,
+     * JobManifest)}. Every tile is enqueued on an OkHttp dispatcher limited to
+     * <code>threadNumber</code> calls in flight, adapted from latency and throttling like the
+     * blocking path, so queued tiles hold no thread and the caller is never blocked. Failed tiles
+     * are retried according to a {@link RetryPolicy} without holding a thread while waiting
+     * @param multiThreadingMap HashMap&lt;String,String&gt; containing API URL, col row pairs
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest recording the size and checksum of each written tile, or null
+     * @return CompletableFuture completed with the number of failed WMS calls
+     */
+    static CompletableFuture<Integer> handleAsyncDownload(HashMap<String, String> multiThreadingMap,
+        Ogc ogc, GeoTiffTileWriter geoTiff, JobManifest manifest) {
+
+        OkHttpClient client = HTTP_CLIENT.newBuilder()
+            .dispatcher(asyncDispatcher(threadNumber(ogc)))
+            .build();
+        //The dispatcher limit follows the adaptive limit as responses come back
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(threadNumber(ogc),
+            maxConcurrency(ogc));
+        RetryPolicy retryPolicy = new RetryPolicy();
+        //Get auth once for all calls
+        return CompletableFuture.supplyAsync(() -> ogc.getAUTH().refreshToken(),
+                client.dispatcher().executorService())
+            .thenCompose(token -> enqueueTiles(client, token, multiThreadingMap, ogc, geoTiff,
+                manifest, limiter, retryPolicy));
+    }
+
+    /**
+     * Enqueues every tile of a set, retrying each according to the job's {@link RetryPolicy}
+     * @param client OkHttpClient whose dispatcher limits the calls in flight
+     * @param token String containing the bearer token
+     * @param tiles Map&lt;String,String&gt; containing API URL, col row pairs
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest recording each written tile, or null
+     * @param limiter ConcurrencyLimiter adjusting the dispatcher's limit
+     * @param retryPolicy RetryPolicy holding the job's retry budget
+     * @return CompletableFuture completed with the number of failed WMS calls
+     */
+    private static CompletableFuture<Integer> enqueueTiles(OkHttpClient client, String token,
+        Map<String, String> tiles, Ogc ogc, GeoTiffTileWriter geoTiff, JobManifest manifest,
+        ConcurrencyLimiter limiter, RetryPolicy retryPolicy) {
+
+        if (tiles.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        Dispatcher dispatcher = client.dispatcher();
+        int total = tiles.size();
+        AtomicInteger remaining = new AtomicInteger(total);
+        AtomicInteger failedRequests = new AtomicInteger();
+        AtomicInteger percentage = new AtomicInteger();
+        String dispatchOrder = geoTiff != null ? TileScheduler.ROW_MAJOR : ogc.getDISPATCH_ORDER();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(total);
+        for (Entry<String, String> entry : TileScheduler.order(tiles, dispatchOrder)) {
+            Request getRequest = new Request.Builder()
+                .header("Authorization", "Bearer " + token)
+                .url(entry.getValue())
+                .build();
+            //Chips past the GeoTIFF writer's buffer are not requested until it has room for them,
+            //so storing them never blocks a dispatcher thread
+            CompletableFuture<Void> room = geoTiff != null ? geoTiff.admitted(entry.getKey())
+                : CompletableFuture.completedFuture(null);
+            results.add(room.thenCompose(ignored -> retryPolicy.executeAsync(getRequest, () -> {
+                long enqueuedAtMillis = System.currentTimeMillis();
+                return enqueue(client, getRequest)
+                    .whenComplete((response, throwable) -> {
+                        if (response != null) {
+                            limiter.onSample(response.receivedResponseAtMillis()
+                                - response.sentRequestAtMillis(), ConcurrencyLimiter.isDropped(
+                                response.code()), dispatcher.runningCallsCount());
+                        } else {
+                            limiter.onFailure(System.currentTimeMillis() - enqueuedAtMillis);
+                        }
+                        dispatcher.setMaxRequests(limiter.getLimit());
+                        dispatcher.setMaxRequestsPerHost(limiter.getLimit());
+                    })
+                    .thenApply(response -> verifiedTile(response, ogc.getIMAGE_FORMAT()));
+            }))
+                .handle((response, throwable) -> {
+                    boolean stored = false;
+                    if (response != null) {
+                        try (response) {
+                            stored = storeTile(response, entry.getKey(), ogc, geoTiff, manifest);
+                        } catch (IOException | RuntimeException e) {
+                            stored = false;
+                        }
+                    }
+                    if (!stored) {
+                        failedRequests.incrementAndGet();
+                        if (manifest != null) {
+                            manifest.fail(entry.getKey());
+                        }
+                        if (geoTiff != null) {
+                            geoTiff.skip(entry.getKey());
+                        }
+                    }
+                    int left = remaining.decrementAndGet();
+                    int quarter = (total - left) * 4 / total;
+                    int current = percentage.get();
+                    if (quarter > current && percentage.compareAndSet(current, quarter)) {
+                        System.out.println((quarter * 25) + "% complete");
+                    }
+                    return stored;
+                }));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> failedRequests.get());
+    }
+
+    /**
+     * Stores a full resolution tile response, either in the GeoTIFF being written or as a file
+     * in the download path
+     * @param response Response returned for the tile
+     * @param key String containing the tile key
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest the tile is recorded in, or null
+     * @return boolean true if the tile was returned and stored
+     * @throws IOException if the tile can not be read or written
+     */
+    private static boolean storeTile(Response response, String key, Ogc ogc,
+        GeoTiffTileWriter geoTiff, JobManifest manifest) throws IOException {
+
+        if (response.code() != 200 || response.body() == null) {
+            return false;
+        }
+        if (geoTiff != null) {
+            geoTiff.accept(key, response.body().bytes());
+        } else {
+            writeTile(response.body(), Paths.get(ogc.getDownloadPath(),
+                key + "." + ogc.getIMAGE_FORMAT()), key, manifest);
+        }
+        return true;
+    }
+
+    /**
+     * Writes a full resolution tile with {@link BodyWriter}, calculating its CRC32 on the way
+     * @param body ResponseBody containing the tile returned by the server
+     * @param tilePath Path the tile is written to
+     * @param key String containing the tile key
+     * @param manifest JobManifest the tile is recorded in, or null
+     * @throws IOException if the tile can not be written
+     */
+    private static void writeTile(ResponseBody body, Path tilePath, String key, JobManifest manifest)
+        throws IOException {
+
+        CRC32 crc = new CRC32();
+        long bytes = BodyWriter.write(body, tilePath, crc);
+        if (manifest != null) {
+            manifest.complete(key, bytes, crc.getValue());
+        }
+    }
+
+    /**
+     * Stitches the tiles downloaded by {@link Streaming#getFullResImage()} into a single tiled
+     * TIFF using {@link MosaicWriter}. Tiles are streamed into the mosaic one at a time and are
+     * left in place
      * @param path String containing the path of the tiles to be mosaiced
-     * @throws UnsupportedOperationException always
+     * @param imageFormat String containing the format the tiles were downloaded in
+     * @param fileName String containing the mosaic filename without extension
+     * @param plan TilePlan the tiles were downloaded from
+     * @param geoTransform double[] containing the upper left x, upper left y, pixel width and
+     * pixel height of the tile grid, or null if the mosaic should not be georeferenced
+     * @param srsname String containing the projection of the grid
+     * @return String containing the location of the mosaic, or null if it could not be created
      */
-    static void createMosaic(String path) throws UnsupportedOperationException {
-        throw new UnsupportedOperationException("Not implemented. Do not use");
+    static String createMosaic(String path, String imageFormat, String fileName, TilePlan plan,
+        double[] geoTransform, String srsname) {
+
+        try {
+            return MosaicWriter.createMosaic(Paths.get(path), imageFormat, fileName,
+                plan.getCOLS(), plan.getROWS(), plan.keys(), geoTransform,
+                decodeCrs(srsname, true)).toString();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Mosaic could not be created, tiles left in " + path + ": " + e);
+            return null;
+        }
     }
 
     /**
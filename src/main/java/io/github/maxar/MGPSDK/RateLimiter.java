@@ -0,0 +1,189 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+/**
+ * Process wide token bucket limiting the rate of requests sent to the Maxar APIs. Buckets are
+ * configured per endpoint (streaming, basemaps, analytics) and per request type (GetFeature,
+ * GetMap, GetTile...), either of which may be a wildcard, and are shared by every SDK instance in
+ * the JVM. A request takes a permit from the most specific bucket configured for it. Permits are
+ * reserved ahead of time, so a caller learns how long to wait up front: blocking calls sleep for
+ * that long, asynchronous calls are scheduled on a delayed executor and hold no thread while they
+ * wait. Requests to other hosts and requests with no configured bucket are never limited
+ */
+class RateLimiter {
+
+    static final List<String> ENDPOINTS = Arrays.asList("streaming", "basemaps", "analytics");
+    private static final String ANY = "*";
+    private static final ConcurrentHashMap<String, RateLimiter> BUCKETS = new ConcurrentHashMap<>();
+
+    private final double PERMITS_PER_NANO;
+    private final double BURST;
+    private final LongSupplier CLOCK;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Constructor for <code>RateLimiter</code>. The bucket starts full
+     * @param requestsPerSecond double containing the sustained rate
+     * @param burst int containing the number of requests that may be sent at once after a pause
+     */
+    RateLimiter(double requestsPerSecond, int burst) {
+        this(requestsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Constructor for <code>RateLimiter</code> refilling the bucket with the given clock
+     * @param requestsPerSecond double containing the sustained rate
+     * @param burst int containing the number of requests that may be sent at once after a pause
+     * @param clock LongSupplier containing the current time in nanoseconds
+     */
+    RateLimiter(double requestsPerSecond, int burst, LongSupplier clock) {
+        this.PERMITS_PER_NANO = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.BURST = Math.max(burst, 1);
+        this.CLOCK = clock;
+        this.tokens = this.BURST;
+        this.lastRefillNanos = clock.getAsLong();
+    }
+
+    /**
+     * Configures the bucket for an endpoint and request type, replacing any existing one
+     * @param endpoint String containing the endpoint, or null for every endpoint
+     * @param requestType String containing the request type, or null for every request type
+     * @param requestsPerSecond double containing the sustained rate, 0 or less removes the limit
+     * @param burst int containing the number of requests that may be sent at once after a pause
+     * @throws IllegalArgumentException if the endpoint is not recognized
+     */
+    static void configure(String endpoint, String requestType, double requestsPerSecond, int burst)
+        throws IllegalArgumentException {
+
+        if (endpoint != null && !ENDPOINTS.contains(endpoint.toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Endpoint not recognized, please use streaming, "
+                + "basemaps or analytics. Endpoint provided: " + endpoint);
+        }
+        String key = key(endpoint, requestType);
+        if (requestsPerSecond <= 0) {
+            BUCKETS.remove(key);
+        } else {
+            BUCKETS.put(key, new RateLimiter(requestsPerSecond, burst));
+        }
+    }
+
+    /**
+     * Waits for a permit to send a request, blocking the calling thread
+     * @param request Request about to be sent
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    static void acquire(Request request) throws InterruptedIOException {
+
+        RateLimiter bucket = find(request.url());
+        if (bucket == null) {
+            return;
+        }
+        long waitNanos = bucket.reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a rate limit permit");
+            }
+        }
+    }
+
+    /**
+     * Reserves a permit to send a request without blocking
+     * @param request Request about to be sent
+     * @return CompletableFuture completed once the request may be sent
+     */
+    static CompletableFuture<Void> acquireAsync(Request request) {
+
+        RateLimiter bucket = find(request.url());
+        long waitNanos = bucket != null ? bucket.reserve() : 0;
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { },
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Takes a permit from the bucket, going into debt if it is empty
+     * @return long containing the nanoseconds until the reserved permit is available
+     */
+    synchronized long reserve() {
+
+        long now = this.CLOCK.getAsLong();
+        this.tokens = Math.min(BURST, this.tokens + (now - this.lastRefillNanos) * PERMITS_PER_NANO);
+        this.lastRefillNanos = now;
+        this.tokens -= 1;
+        return this.tokens >= 0 ? 0 : (long) (-this.tokens / PERMITS_PER_NANO);
+    }
+
+    /**
+     * Finds the most specific bucket for a request URL
+     * @param url HttpUrl of the request
+     * @return RateLimiter for the request, or null if it is not limited
+     */
+    private static RateLimiter find(HttpUrl url) {
+
+        if (BUCKETS.isEmpty()) {
+            return null;
+        }
+        String endpoint = endpoint(url);
+        return endpoint != null ? find(endpoint, url.queryParameter("request")) : null;
+    }
+
+    /**
+     * Finds the most specific bucket for an endpoint and request type
+     * @param endpoint String containing the endpoint
+     * @param requestType String containing the request type, or null if the request has none
+     * @return RateLimiter for the request, or null if it is not limited
+     */
+    static RateLimiter find(String endpoint, String requestType) {
+
+        for (String key : new String[] {key(endpoint, requestType), key(endpoint, null),
+            key(null, requestType), key(null, null)}) {
+            RateLimiter bucket = BUCKETS.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the Maxar endpoint a request URL is sent to
+     * @param url HttpUrl of the request
+     * @return String containing the endpoint, or null if the URL is not a Maxar endpoint
+     */
+    static String endpoint(HttpUrl url) {
+
+        for (String segment : url.pathSegments()) {
+            if (ENDPOINTS.contains(segment)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the registry key of a bucket
+     * @param endpoint String containing the endpoint, or null for any
+     * @param requestType String containing the request type, or null for any
+     * @return String containing the key
+     */
+    private static String key(String endpoint, String requestType) {
+        return (endpoint != null ? endpoint.toLowerCase(Locale.ROOT) : ANY) + "|"
+            + (requestType != null ? requestType.toLowerCase(Locale.ROOT) : ANY);
+    }
+}
@@ -0,0 +1,265 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Hedges GetMap and GetTile requests to cut tail latency. When a request has not returned by the
+ * configured latency percentile of its request type, tracked by {@link LatencyHistogram}, a
+ * duplicate is sent. The first successful response wins and the other request is cancelled. A
+ * process wide hedge budget allows at most {@value #HEDGE_RATIO} of recent requests to be
+ * duplicated, so hedging can not double the load on an endpoint that is slow across the board
+ */
+class RequestHedger {
+
+    static final double HEDGE_RATIO = 0.1;
+    //Number of requests after which the budget's counts are halved
+    static final int DECAY_REQUESTS = 1000;
+    private static final List<String> HEDGED_TYPES = Arrays.asList("getmap", "gettile");
+    private static final Budget BUDGET = new Budget();
+
+    /**
+     * Constructor for <code>RequestHedger</code>. Utility class, not meant to be instantiated
+     */
+    RequestHedger() {
+        throw new UnsupportedOperationException("RequestHedger can not be instantiated");
+    }
+
+    /**
+     * Checks that a hedging percentile set on the builder is valid
+     * @param percentile double containing the percentile, 0 if hedging is disabled
+     * @return double containing the validated percentile
+     * @throws IllegalArgumentException if the percentile is not at least 0 and less than 100
+     */
+    static double validatePercentile(double percentile) throws IllegalArgumentException {
+
+        if (!(percentile >= 0 && percentile < 100)) {
+            throw new IllegalArgumentException("Hedge percentile must be at least 0 and less than "
+                + "100, 0 turns hedging off. Percentile provided: " + percentile);
+        }
+        return percentile;
+    }
+
+    /**
+     * Checks whether a request is of a type that is hedged
+     * @param request Request about to be sent
+     * @return boolean true for GetMap and GetTile requests
+     */
+    static boolean isHedged(Request request) {
+        return HEDGED_TYPES.contains(LatencyHistogram.requestType(request));
+    }
+
+    /**
+     * Sends a hedged request, blocking the calling thread until the first response returns
+     * @param request Request being sent
+     * @param percentile double containing the latency percentile after which a duplicate is sent
+     * @param attempt Supplier sending the request once
+     * @return Response of the request that returned first
+     * @throws IOException if every request sent failed or the thread is interrupted
+     */
+    static Response send(Request request, double percentile,
+        Supplier<CompletableFuture<Response>> attempt) throws IOException {
+
+        CompletableFuture<Response> hedged = sendAsync(request, percentile, attempt);
+        try {
+            return hedged.get();
+        } catch (InterruptedException ie) {
+            hedged.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.url());
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+    }
+
+    /**
+     * Sends a hedged request without blocking
+     * @param request Request being sent
+     * @param percentile double containing the latency percentile after which a duplicate is sent
+     * @param attempt Supplier sending the request once
+     * @return CompletableFuture completed with the Response of the request that returned first.
+     * Cancelling the future cancels every request in flight
+     */
+    static CompletableFuture<Response> sendAsync(Request request, double percentile,
+        Supplier<CompletableFuture<Response>> attempt) {
+
+        BUDGET.countRequest();
+        long delay = LatencyHistogram.percentile(LatencyHistogram.requestType(request), percentile);
+        if (delay < 0) {
+            //Not enough samples yet to know what slow looks like
+            return attempt.get();
+        }
+        Race race = new Race();
+        race.add(attempt.get());
+        CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+            .thenRun(() -> {
+                if (!race.result.isDone() && BUDGET.spendHedge()) {
+                    race.add(attempt.get());
+                }
+            });
+        return race.result;
+    }
+
+    /**
+     * Hedge budget allowing {@value #HEDGE_RATIO} hedges per request. Both counts are halved every
+     * {@value #DECAY_REQUESTS} requests, so budget left unused during a healthy stretch can not be
+     * spent all at once when the endpoint slows down
+     */
+    static class Budget {
+
+        private long requests;
+        private long hedges;
+
+        /**
+         * Records a new request against the budget
+         */
+        synchronized void countRequest() {
+
+            if (++this.requests >= DECAY_REQUESTS) {
+                this.requests /= 2;
+                this.hedges /= 2;
+            }
+        }
+
+        /**
+         * Spends one hedge from the budget
+         * @return boolean true if the budget allowed the hedge
+         */
+        synchronized boolean spendHedge() {
+
+            if (this.hedges >= HEDGE_RATIO * this.requests) {
+                return false;
+            }
+            this.hedges++;
+            return true;
+        }
+    }
+
+    /**
+     * Copies of a request racing each other. The first successful response completes the result
+     * and cancels the rest. If none succeeds, the result completes once all of them have returned,
+     * with the last unsuccessful response or failure
+     */
+    private static class Race {
+
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private final List<CompletableFuture<Response>> attempts = new ArrayList<>();
+        private int pending;
+        private boolean decided;
+        private Response fallback;
+        private Throwable failure;
+
+        /**
+         * Constructor for <code>Race</code>. Cancelling the result cancels every attempt
+         */
+        Race() {
+            this.result.whenComplete((response, throwable) -> {
+                if (this.result.isCancelled()) {
+                    this.cancelAll();
+                }
+            });
+        }
+
+        /**
+         * Adds an attempt to the race
+         * @param attempt CompletableFuture of a copy of the request
+         */
+        void add(CompletableFuture<Response> attempt) {
+
+            boolean racing;
+            synchronized (this) {
+                racing = !this.decided;
+                if (racing) {
+                    this.attempts.add(attempt);
+                    this.pending++;
+                }
+            }
+            if (racing) {
+                attempt.whenComplete(this::settle);
+            } else {
+                attempt.cancel(true);
+            }
+        }
+
+        /**
+         * Settles an attempt that returned. The result is completed outside the lock so callers'
+         * continuations never run while holding it
+         * @param response Response of the attempt, or null if it failed
+         * @param throwable Throwable the attempt failed with, or null if it returned
+         */
+        private void settle(Response response, Throwable throwable) {
+
+            Response winner;
+            Throwable lost;
+            synchronized (this) {
+                this.pending--;
+                if (this.decided) {
+                    if (response != null) {
+                        response.close();
+                    }
+                    return;
+                }
+                if (response != null && response.isSuccessful()) {
+                    if (this.fallback != null) {
+                        this.fallback.close();
+                    }
+                    this.fallback = response;
+                    this.decided = true;
+                } else if (response != null) {
+                    if (this.fallback != null) {
+                        this.fallback.close();
+                    }
+                    this.fallback = response;
+                } else {
+                    this.failure = throwable instanceof CompletionException
+                        && throwable.getCause() != null ? throwable.getCause() : throwable;
+                }
+                if (this.pending == 0) {
+                    this.decided = true;
+                }
+                if (!this.decided) {
+                    return;
+                }
+                winner = this.fallback;
+                lost = this.failure;
+            }
+            if (winner != null) {
+                if (!this.result.complete(winner)) {
+                    winner.close();
+                }
+            } else {
+                this.result.completeExceptionally(lost);
+            }
+            this.cancelAll();
+        }
+
+        /**
+         * Cancels every attempt still in flight
+         */
+        private void cancelAll() {
+
+            List<CompletableFuture<Response>> inFlight;
+            synchronized (this) {
+                this.decided = true;
+                inFlight = new ArrayList<>(this.attempts);
+            }
+            for (CompletableFuture<Response> attempt : inFlight) {
+                attempt.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retry policy shared by every request the SDK sends: WFS, WMS and WMTS calls through
+ * {@link OgcUtils#handleRequest(Auth, String, java.util.HashMap)}, full resolution tiles and
+ * seeded tiles. Only idempotent requests are retried, and only on transport failures and
+ * transient statuses (408, 429, 500, 502, 503, 504), never while the {@link CircuitBreaker} of
+ * the endpoint is open. Attempts are spaced with exponential
+ * backoff and full jitter, or by the server's <code>Retry-After</code> header when present. A
+ * policy instance carries a retry budget, so a job sharing one policy can retry at most
+ * {@value #MIN_RETRIES} requests plus {@value #RETRY_RATIO} of its requests, which stops an outage
+ * from turning into a retry storm
+ */
+class RetryPolicy {
+
+    static final int MAX_ATTEMPTS = 5;
+    static final int MIN_RETRIES = 10;
+    static final double RETRY_RATIO = 0.2;
+    private static final long BASE_DELAY_MILLIS = 250;
+    private static final long MAX_DELAY_MILLIS = 30_000;
+    private static final List<Integer> RETRYABLE_CODES = Arrays.asList(408, 429, 500, 502, 503, 504);
+    private static final List<String> IDEMPOTENT_METHODS = Arrays.asList("GET", "HEAD", "PUT",
+        "DELETE", "OPTIONS");
+
+    private long requests;
+    private long retries;
+
+    /**
+     * Sends a request through a client attempt, retrying it according to the policy. Blocks the
+     * calling thread between attempts
+     * @param request Request being sent, used to check idempotency
+     * @param attempt {@link Attempt} sending the request once
+     * @return Response of the last attempt, which may still be unsuccessful
+     * @throws IOException if the last attempt failed without a response
+     */
+    Response execute(Request request, Attempt attempt) throws IOException {
+
+        this.countRequest();
+        for (int attempts = 1; ; attempts++) {
+            Response response = null;
+            IOException failure = null;
+            try {
+                response = attempt.send();
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+            if (attempts >= MAX_ATTEMPTS || !this.shouldRetry(request, response, failure)) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            long delay = backoffMillis(attempts, response);
+            if (response != null) {
+                response.close();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + request.url());
+            }
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(Request, Attempt)}. No thread is held while waiting
+     * between attempts
+     * @param request Request being sent, used to check idempotency
+     * @param attempt Supplier sending the request once
+     * @return CompletableFuture completed with the Response of the last attempt, which may still be
+     * unsuccessful, or exceptionally if the last attempt failed without a response
+     */
+    CompletableFuture<Response> executeAsync(Request request,
+        Supplier<CompletableFuture<Response>> attempt) {
+
+        this.countRequest();
+        return this.attemptAsync(request, attempt, 1);
+    }
+
+    /**
+     * Sends one asynchronous attempt and schedules the next one if it should be retried
+     * @param request Request being sent
+     * @param attempt Supplier sending the request once
+     * @param attempts int containing the number of this attempt, starting at 1
+     * @return CompletableFuture completed with the final Response
+     */
+    private CompletableFuture<Response> attemptAsync(Request request,
+        Supplier<CompletableFuture<Response>> attempt, int attempts) {
+
+        return attempt.get().handle((response, throwable) -> {
+            Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            if (attempts >= MAX_ATTEMPTS || !this.shouldRetry(request, response, failure)) {
+                return failure != null ? CompletableFuture.<Response>failedFuture(failure)
+                    : CompletableFuture.completedFuture(response);
+            }
+            long delay = backoffMillis(attempts, response);
+            if (response != null) {
+                response.close();
+            }
+            return CompletableFuture.runAsync(() -> { },
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .thenCompose(ignored -> this.attemptAsync(request, attempt, attempts + 1));
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * Decides whether an attempt should be retried, spending from the retry budget if it is
+     * @param request Request that was sent
+     * @param response Response returned, or null if the attempt failed
+     * @param failure Throwable the attempt failed with, or null if it returned
+     * @return boolean true if the request should be sent again
+     */
+    boolean shouldRetry(Request request, Response response, Throwable failure) {
+
+        //An open circuit will not be closed by retrying into it
+        if (!IDEMPOTENT_METHODS.contains(request.method())
+            || failure instanceof CircuitOpenException) {
+            return false;
+        }
+        boolean transientFailure = response != null ? RETRYABLE_CODES.contains(response.code())
+            : failure instanceof IOException;
+        return transientFailure && this.spendRetry();
+    }
+
+    /**
+     * Calculates how long to wait before the next attempt. A <code>Retry-After</code> header, in
+     * seconds or as an HTTP date, takes precedence over exponential backoff with full jitter
+     * @param attempts int containing the number of attempts made so far
+     * @param response Response of the last attempt, or null if it failed without one
+     * @return long containing the delay in milliseconds
+     */
+    static long backoffMillis(int attempts, Response response) {
+
+        long retryAfter = response != null ? retryAfterMillis(response) : -1;
+        if (retryAfter >= 0) {
+            return Math.min(MAX_DELAY_MILLIS, retryAfter);
+        }
+        long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempts - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Reads the <code>Retry-After</code> header of a response, in seconds or as an HTTP date
+     * @param response Response returned by the server
+     * @return long containing the requested wait in milliseconds, or -1 if the header is missing
+     * or can not be parsed
+     */
+    static long retryAfterMillis(Response response) {
+
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException nfe) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(), date).toMillis());
+            } catch (DateTimeParseException dtpe) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Records a new request against the retry budget
+     */
+    private synchronized void countRequest() {
+        this.requests++;
+    }
+
+    /**
+     * Spends one retry from the budget
+     * @return boolean true if the budget allowed the retry
+     */
+    private synchronized boolean spendRetry() {
+
+        if (this.retries >= MIN_RETRIES + RETRY_RATIO * this.requests) {
+            return false;
+        }
+        this.retries++;
+        return true;
+    }
+
+    /**
+     * Gets the number of retries spent from the budget
+     * @return long containing the number of retries
+     */
+    synchronized long getRetries() {
+        return this.retries;
+    }
+
+    /**
+     * Sends a request once
+     */
+    interface Attempt {
+
+        /**
+         * Sends the request
+         * @return Response returned by the server
+         * @throws IOException if the request failed without a response
+         */
+        Response send() throws IOException;
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.maxar.MGPSDK;
+
+/**
+ * Thrown when an API keeps returning a server error (5xx) after the request was retried
+ */
+public class ServerErrorException extends ApiException {
+
+    /**
+     * Constructor for <code>ServerErrorException</code>
+     * @param message String containing the detail message
+     * @param statusCode int containing the HTTP status code
+     * @param body String containing the response body, may be empty
+     */
+    public ServerErrorException(String message, int statusCode, String body) {
+        super(message, statusCode, body);
+    }
+}
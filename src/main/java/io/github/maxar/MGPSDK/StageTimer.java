@@ -0,0 +1,86 @@
+package io.github.maxar.MGPSDK;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times the stages of a multi stage job, such as the resolve, plan, fetch and assemble stages of
+ * {@link Streaming#getFullResImage()}, so the user can see where a slow job spent its time.
+ * Stages are reported in the order they were recorded. Safe to record from the threads an
+ * asynchronous job completes on
+ */
+class StageTimer {
+
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    /**
+     * Runs a stage and records how long it took, whether or not it completes normally
+     * @param stage String containing the name of the stage
+     * @param work Supplier running the stage
+     * @param <T> type returned by the stage
+     * @return the stage's result
+     */
+    <T> T time(String stage, Supplier<T> work) {
+
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            this.record(stage, start);
+        }
+    }
+
+    /**
+     * Runs a stage that returns nothing and records how long it took
+     * @param stage String containing the name of the stage
+     * @param work Runnable running the stage
+     */
+    void run(String stage, Runnable work) {
+
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            this.record(stage, start);
+        }
+    }
+
+    /**
+     * Records a stage that started earlier and has just finished, for stages that complete
+     * asynchronously
+     * @param stage String containing the name of the stage
+     * @param startNanos long containing the <code>System.nanoTime()</code> the stage started at
+     */
+    synchronized void record(String stage, long startNanos) {
+        this.durations.merge(stage, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    /**
+     * Gets how long a stage took
+     * @param stage String containing the name of the stage
+     * @return long containing the duration in milliseconds, -1 if the stage was not recorded
+     */
+    synchronized long getMillis(String stage) {
+
+        Long nanos = this.durations.get(stage);
+        return nanos != null ? TimeUnit.NANOSECONDS.toMillis(nanos) : -1;
+    }
+
+    /**
+     * Lists every recorded stage and its duration
+     * @return String such as <code>resolve 850 ms, plan 12 ms</code>
+     */
+    @Override
+    public synchronized String toString() {
+
+        StringJoiner stages = new StringJoiner(", ");
+        for (Map.Entry<String, Long> stage : this.durations.entrySet()) {
+            stages.add(stage.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(stage.getValue())
+                + " ms");
+        }
+        return stages.toString();
+    }
+}
@@ -1,23 +1,23 @@
 package io.github.maxar.MGPSDK;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
-import okhttp3.HttpUrl;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import okhttp3.Response;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Envelope;
 
 /**
  *  Object generated by {@link Streaming.Builder} that allows the user to make OGC compliant calls
@@ -88,202 +88,439 @@ public class Streaming extends Ogc {
      * Searches using the WFS method.
      * @return FeatureCollection GeoJson result
      * @throws IllegalArgumentException if CQL filter fails check, or if builder parameters are incorrect
+     * @throws MaxarException if the search fails, see {@link ApiException} and
+     * {@link TransportException}
      */
     public StreamingFeatureCollection search() {
 
-        if (this.getREQUEST_TYPE() != null) {
-            throw new UnsupportedOperationException("When performing a request other than "
-                + "GetFeature, searchToString() must be used");
+        Response wfsResults = this.featureSearch().search();
+        return parseFeatureCollection(wfsResults, StreamingFeatureCollection.class);
+    }
+
+    /**
+     * Asynchronous version of {@link #search()}. Builder parameters are validated before
+     * returning, the request itself is sent through the OkHttp dispatcher
+     * @return CompletableFuture completed with the FeatureCollection GeoJson result, or
+     * exceptionally with the {@link MaxarException} {@link #search()} would have thrown
+     * @throws IllegalArgumentException if CQL filter fails check, or if builder parameters are incorrect
+     */
+    public CompletableFuture<StreamingFeatureCollection> searchAsync() {
+        return this.featureSearch().searchAsync()
+            .thenApply(wfsResults -> parseFeatureCollection(wfsResults, StreamingFeatureCollection.class));
+    }
+
+    /**
+     * Looks up many features by ID in a handful of WFS requests instead of one per ID. IDs are
+     * packed into <code>featureId IN (...)</code> filters of up to {@value Wfs#MAX_IDS_PER_FILTER}
+     * IDs, kept short enough for the request URL, and the requests are sent in parallel. The
+     * builder's bbox, projection and type name still apply, its filter and feature ID are not used
+     * @param featureIds Collection&lt;String&gt; containing the IDs of the features
+     * @return StreamingFeatureCollection containing the features found, in the order of their
+     * IDs. IDs that match no feature are left out and printed
+     * @throws IllegalArgumentException if no IDs are provided, if an ID is null, or if builder
+     * parameters are incorrect
+     * @throws MaxarException if a lookup fails, see {@link ApiException} and
+     * {@link TransportException}
+     */
+    public StreamingFeatureCollection searchByIds(Collection<String> featureIds)
+        throws IllegalArgumentException {
+
+        if (featureIds == null || featureIds.isEmpty()) {
+            throw new IllegalArgumentException("Must provide at least one feature ID");
         }
-        Wfs wfs = new Wfs(this);
-        if (this.getFilter() != null) {
-            OgcUtils.cqlChecker(this.getFilter());
+        //Checked one by one, contains(null) throws for some collections
+        for (String featureId : featureIds) {
+            if (featureId == null) {
+                throw new IllegalArgumentException("Feature IDs must not be null");
+            }
         }
-        Response wfsResults = wfs.search();
-        String stringWfsResults = null;
-        try {
-            assert wfsResults.body() != null;
-            stringWfsResults = wfsResults.body().string();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+        Set<String> ids = new LinkedHashSet<>(featureIds);
+        List<CompletableFuture<StreamingFeatureCollection>> lookups = new ArrayList<>();
+        for (String filter : Wfs.featureIdFilters(ids)) {
+            lookups.add(new Wfs(this).searchAsync(filter)
+                .thenApply(wfsResults -> parseFeatureCollection(wfsResults,
+                    StreamingFeatureCollection.class)));
         }
-        Gson gson = new GsonBuilder()
-            .registerTypeAdapter(Geometry.class, new GeometryTypeAdapter())
-            .create();
-
-        return gson.fromJson(stringWfsResults, StreamingFeatureCollection.class);
+        Map<String, StreamingFeatureCollection.Features> found = new HashMap<>();
+        StreamingFeatureCollection first = null;
+        for (CompletableFuture<StreamingFeatureCollection> lookup : lookups) {
+            StreamingFeatureCollection collection;
+            try {
+                collection = lookup.join();
+            } catch (CompletionException ce) {
+                throw ce.getCause() instanceof RuntimeException
+                    ? (RuntimeException) ce.getCause() : ce;
+            }
+            first = first != null ? first : collection;
+            if (collection.features() == null) {
+                continue;
+            }
+            for (StreamingFeatureCollection.Features feature : collection.features()) {
+                String featureId = feature.properties() != null
+                    && feature.properties().featureId() != null
+                    ? feature.properties().featureId() : feature.id();
+                found.putIfAbsent(featureId, feature);
+            }
+        }
+        List<StreamingFeatureCollection.Features> features = new ArrayList<>();
+        for (String featureId : ids) {
+            StreamingFeatureCollection.Features feature = found.get(featureId);
+            if (feature != null) {
+                features.add(feature);
+            } else {
+                System.out.println("No feature found with ID " + featureId);
+            }
+        }
+        System.out.printf("Found %s of %s features in %s requests%n", features.size(),
+            ids.size(), lookups.size());
+        return new StreamingFeatureCollection("FeatureCollection",
+            features.toArray(new StreamingFeatureCollection.Features[0]),
+            String.valueOf(features.size()), features.size(), first.timestamp(), first.crs());
     }
 
     /**
      * Accepts a feature id and breaks the image up into 1024x1024 tiles, then places
      * a number of multithreaded calls to return a full image strip in multiple tiles. FeatureId
-     * is required. A bbox can be provided if the entire feature is not needed
+     * is required. A bbox can be provided if the entire feature is not needed. The download runs
+     * in four stages, each timed and reported once the download completes: the feature is
+     * resolved with a single WFS search, its tiles are planned, fetched, then assembled into the
+     * requested outputs
      * @throws IllegalArgumentException if builder parameters are not set correctly
      *
      */
     public void getFullResImage() throws IllegalArgumentException {
 
+        this.validateFullRes();
+        StageTimer timer = new StageTimer();
+        StreamingFeatureCollection.Features feature = timer.time("resolve",
+            () -> this.resolveFeature(this.search()));
+        FullResJob job = timer.time("plan", () -> this.planFullRes(feature));
+
+        System.out.println("Starting full image download process...");
+        //call util function to handle full download
+        int failedDownloads = timer.time("fetch", () -> OgcUtils.handleMultithreadDownload(
+            job.urls, this, job.geoTiff, job.manifest));
+        timer.run("assemble", () -> this.finishFullRes(job, failedDownloads));
+        System.out.println("Full resolution stages: " + timer);
+    }
+
+    /**
+     * Asynchronous version of {@link #getFullResImage()}. The feature search and every tile are
+     * sent through the OkHttp dispatcher instead of a thread pool, with at most
+     * {@link Builder#threadNumber(int)} tile requests in flight, so queued tiles hold no thread and
+     * the calling thread is never blocked
+     * @return CompletableFuture completed once every tile has been downloaded and written
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    public CompletableFuture<Void> getFullResImageAsync() throws IllegalArgumentException {
+
+        this.validateFullRes();
+        StageTimer timer = new StageTimer();
+        long resolveStart = System.nanoTime();
+        return this.searchAsync().thenCompose(features -> {
+            StreamingFeatureCollection.Features feature = this.resolveFeature(features);
+            timer.record("resolve", resolveStart);
+            FullResJob job = timer.time("plan", () -> this.planFullRes(feature));
+            System.out.println("Starting full image download process...");
+            long fetchStart = System.nanoTime();
+            return OgcUtils.handleAsyncDownload(job.urls, this, job.geoTiff, job.manifest)
+                .thenAccept(failedDownloads -> {
+                    timer.record("fetch", fetchStart);
+                    timer.run("assemble", () -> this.finishFullRes(job, failedDownloads));
+                    System.out.println("Full resolution stages: " + timer);
+                });
+        });
+    }
+
+    /**
+     * Downloads the full resolution imagery of several features in one job. Every feature is
+     * resolved and every tile planned up front, then all tiles are fetched by a single scheduler
+     * sharing one connection pool, concurrency limit and retry budget, so the download stays
+     * saturated from one strip to the next instead of winding down and spinning up per feature.
+     * Tiles of each feature are written to a <code>{featureId}</code> folder in the download path,
+     * and mosaiced per feature if {@link Builder#mosaic()} is set. IDs that match no feature, or
+     * whose feature does not overlap the bbox, are skipped. {@link Builder#geoTiffOutput()} is not
+     * supported for batches
+     * @param featureIds Collection&lt;String&gt; containing the IDs of the features
+     * @throws IllegalArgumentException if builder parameters are not set correctly or none of the
+     * features can be downloaded
+     * @throws MaxarException if a feature lookup fails
+     */
+    public void getFullResImages(Collection<String> featureIds) throws IllegalArgumentException {
+
+        this.validateFullResBatch();
+        StageTimer timer = new StageTimer();
+        List<StreamingFeatureCollection.Features> features = timer.time("resolve",
+            () -> this.resolveFeatures(featureIds));
+        this.downloadBatch(features, timer);
+    }
+
+    /**
+     * Downloads the full resolution imagery of every feature of a search result in one job, see
+     * {@link #getFullResImages(Collection)}. The search must have been made in the same projection
+     * as this download
+     * @param featureCollection StreamingFeatureCollection containing the features
+     * @throws IllegalArgumentException if builder parameters are not set correctly or none of the
+     * features can be downloaded
+     */
+    public void getFullResImages(StreamingFeatureCollection featureCollection)
+        throws IllegalArgumentException {
+
+        this.validateFullResBatch();
+        if (featureCollection.features() == null || featureCollection.features().length == 0) {
+            throw new IllegalArgumentException("Feature collection contains no features");
+        }
+        this.downloadBatch(Arrays.asList(featureCollection.features()), new StageTimer());
+    }
+
+    /**
+     * Plans, fetches and assembles a batch of features
+     * @param features List&lt;Features&gt; containing the features to download
+     * @param timer StageTimer the stages are recorded in
+     * @throws IllegalArgumentException if none of the features overlap the bbox
+     */
+    private void downloadBatch(List<StreamingFeatureCollection.Features> features,
+        StageTimer timer) throws IllegalArgumentException {
+
+        FullResJob job = timer.time("plan", () -> this.planBatch(features));
+        System.out.println("Starting full image download process...");
+        int failedDownloads = timer.time("fetch", () -> OgcUtils.handleMultithreadDownload(
+            job.urls, this, null, job.manifest));
+        timer.run("assemble", () -> this.finishBatch(job, failedDownloads));
+        System.out.println("Full resolution stages: " + timer);
+    }
+
+    /**
+     * Tile grid and outputs of a planned full resolution download
+     */
+    private static class FullResJob {
+
+        HashMap<String, String> urls;
+        TilePlan plan;
+        //Plan of each feature of a batch, by feature ID
+        Map<String, TilePlan> plans;
+        GeoTiffTileWriter geoTiff;
+        Path geoTiffPath;
+        JobManifest manifest;
+    }
+
+    /**
+     * Validates the builder parameters of a full resolution download
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private void validateFullRes() throws IllegalArgumentException {
+
         if (!(((Number) this.getTHREAD_NUMBER()).doubleValue() != 0)) {
             throw new IllegalArgumentException("Must provide number of threads to use");
         }
         if (this.getFEATURE_ID() == null) {
             throw new IllegalArgumentException("GetFullResImage requires a feature ID");
         }
-
-        StreamingFeatureCollection wfsRequest = this.search();
-        Coordinate[] imageBbox = wfsRequest.features()[0].geometry().getCoordinates();
-        double[] xCoords = new double[imageBbox.length];
-        double[] yCoords = new double[imageBbox.length];
-        for (int i = 0; i < imageBbox.length; i++) {
-            xCoords[i] = imageBbox[i].x;
-            yCoords[i] = imageBbox[i].y;
+        if (this.getIMAGE_FORMAT() == null) {
+            throw new IllegalArgumentException("Must provide an image format");
         }
-        Arrays.sort(xCoords);
-        Arrays.sort(yCoords);
+        OgcUtils.validateImageFormat(this);
+    }
 
-        String srsname = this.getSrsname() != null ? this.getSrsname() : "EPSG:4326";
-        double yValue = srsname.equals("EPSG:4326") ? 0.0042176 : 468.1536;
-        double xValue = srsname.equals("EPSG:4326") ? 0.0054932 : 468.1536;
-        double minY = yCoords[0];
-        double minX = xCoords[0];
-        double maxY = yCoords[yCoords.length - 1] + yValue;
-        double maxX = xCoords[xCoords.length - 1] + xValue;
-        if (this.getBbox() != null) {
-            OgcUtils.validateBbox(this);
-            String[] bboxList = this.getBbox().split(",");
-            minY = Math.max(minY, Double.parseDouble(bboxList[0]));
-            maxY = Math.min(maxY, Double.parseDouble(bboxList[2])) + yValue;
-            minX = Math.max(minX, Double.parseDouble(bboxList[1]));
-            maxX = Math.min(maxX, Double.parseDouble(bboxList[3])) + xValue;
+    /**
+     * Validates the builder parameters of a batch of full resolution downloads
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private void validateFullResBatch() throws IllegalArgumentException {
+
+        if (!(((Number) this.getTHREAD_NUMBER()).doubleValue() != 0)) {
+            throw new IllegalArgumentException("Must provide number of threads to use");
         }
-        // Generate a Hashmap that splits the bbox into col row tiles
-        ArrayList<Double> yList = new ArrayList<>();
-        ArrayList<Double> xList = new ArrayList<>();
-        while (minY < maxY) {
-            yList.add(minY);
-            minY += yValue;
+        if (this.getIMAGE_FORMAT() == null) {
+            throw new IllegalArgumentException("Must provide an image format");
         }
-        Double[] yListArr = new Double[yList.size()];
-        yListArr = yList.toArray(yListArr);
-        while (minX < maxX) {
-            xList.add(minX);
-            minX += xValue;
+        if (this.isGEOTIFF_OUTPUT()) {
+            throw new IllegalArgumentException("geoTiffOutput() is not supported for batches, "
+                + "use mosaic()");
         }
-        Double[] xListArr = new Double[xList.size()];
-        xListArr = xList.toArray(xListArr);
-        HashMap<String, String> tiles = new HashMap<>();
-
-        if (srsname.equals("EPSG:4326")) {
-            if (yListArr.length == 1) {
-                if (xList.size() == 1) {
-                    tiles.put("c0_r0", String.format("%s, %s, %s, %s", yListArr[0], xListArr[0],
-                        yListArr[0] + yValue, xListArr[0] + xValue));
-                } else {
-                    for (int i = 0; i < xListArr.length - 1; i++) {
-                        tiles.put(String.format("c%s_r%s", xListArr[i], 0), String.format("%s, %s, %s, %s",
-                            yListArr[0], xListArr[i], yListArr[0] + yValue, xListArr[i + 1]));
-                    }
-                }
-            } else if (xListArr.length == 1) {
-                for (int i = yListArr.length - 1; i >= 0; i--) {
-                    tiles.put(String.format("c%s_r%s", 0, yListArr.length - 2), String.format("%s, %s, %s, %s",
-                        yListArr[i], xListArr[0], yListArr[i + 1], xListArr[0] + xValue));
-                }
-            } else {
-                for (int i = yListArr.length - 2; i >= 0; i--) {
-                    for (int j = 0; j < xListArr.length - 1; j++) {
-                        tiles.put(String.format("c%s_r%s", j, yListArr.length - i - 2),
-                            String.format("%s, %s, %s, %s", yListArr[i], xListArr[j], yListArr[i + 1], xListArr[j + 1]));
-                    }
-                }
+        OgcUtils.validateImageFormat(this);
+    }
+
+    /**
+     * Looks up a batch of features by ID with {@link #searchByIds(Collection)}
+     * @param featureIds Collection&lt;String&gt; containing the IDs of the features
+     * @return List&lt;Features&gt; containing the features found, in the order of their IDs
+     * @throws IllegalArgumentException if no feature is found
+     * @throws MaxarException if a lookup fails
+     */
+    private List<StreamingFeatureCollection.Features> resolveFeatures(Collection<String> featureIds)
+        throws IllegalArgumentException {
+
+        StreamingFeatureCollection collection = this.searchByIds(featureIds);
+        if (collection.features().length == 0) {
+            throw new IllegalArgumentException("No features found with IDs " + featureIds);
+        }
+        return Arrays.asList(collection.features());
+    }
+
+    /**
+     * Plans the tiles of every feature of a batch. Tile keys are prefixed with the feature ID so
+     * every feature's tiles land in their own folder and are dispatched feature by feature
+     * @param features List&lt;Features&gt; containing the features to download
+     * @return {@link FullResJob} containing the tile URLs of every feature
+     * @throws IllegalArgumentException if none of the features overlap the bbox
+     */
+    private FullResJob planBatch(List<StreamingFeatureCollection.Features> features)
+        throws IllegalArgumentException {
+
+        FullResJob job = new FullResJob();
+        job.urls = new HashMap<>();
+        job.plans = new LinkedHashMap<>();
+        HashMap<String, String> bboxes = new HashMap<>();
+        for (StreamingFeatureCollection.Features feature : features) {
+            String featureId = feature.properties() != null && feature.properties().featureId() != null
+                ? feature.properties().featureId() : feature.id();
+            if (job.plans.containsKey(featureId)) {
+                continue;
             }
-        } else {
-            if (yListArr.length == 1) {
-                if (xList.size() == 1) {
-                    tiles.put("c0_r0", String.format("%s, %s, %s, %s", xListArr[0], yListArr[0],
-                        xListArr[0] + xValue, yListArr[0] + yValue));
-                } else {
-                    for (int i = 0; i < xListArr.length - 1; i++) {
-                        tiles.put(String.format("c%s_r%s", xListArr[i], 0), String.format("%s, %s, %s, %s",
-                            xListArr[i], yListArr[0], xListArr[i + 1], yListArr[0] + yValue));
-                    }
-                }
-            } else if (xListArr.length == 1) {
-                for (int i = yListArr.length - 1; i >= 0; i--) {
-                    tiles.put(String.format("c%s_r%s", 0, yListArr.length - 2), String.format("%s, %s, %s, %s",
-                        xListArr[0], yListArr[i], xListArr[0] + xValue, yListArr[i]));
-                }
-            } else {
-                for (int i = yListArr.length - 2; i >= 0; i--) {
-                    for (int j = 0; j < xListArr.length - 1; j++) {
-                        tiles.put(String.format("c%s_r%s", j, yListArr.length - i - 2),
-                            String.format("%s, %s, %s, %s", yListArr[i], xListArr[j], yListArr[i + 1], xListArr[j + 1]));
-                    }
-                }
+            TilePlan plan;
+            try {
+                plan = this.planTiles(feature);
+            } catch (IllegalArgumentException iae) {
+                System.out.println("Feature " + featureId + " skipped: " + iae.getMessage());
+                continue;
             }
+            job.plans.put(featureId, plan);
+            job.urls.putAll(this.tileUrls(plan, featureId, featureId + "/"));
+            bboxes.putAll(plan.bboxes(yFirst(this.getSrsname()), featureId + "/"));
         }
+        if (job.urls.isEmpty()) {
+            throw new IllegalArgumentException("None of the features overlap the bbox");
+        }
+        System.out.printf("Number of tiles: %s across %s features%n", job.urls.size(),
+            job.plans.size());
+        this.prepareDownloadPath();
+        job.manifest = this.resumeManifest(String.join(",", job.plans.keySet()), bboxes, job.urls);
+        return job;
+    }
 
-        //This section deletes bboxes that don't cover the image from Tiles
-        StreamingFeatureCollection wfsResponse = this.search();
-        this.setSrsname(srsname);
-        GeometryFactory geometryFactory = new GeometryFactory();
-
-        Iterator<Entry<String, String>> it = tiles.entrySet().iterator();
-        while (it.hasNext()) {
-            HashMap.Entry<String, String> entry = it.next();
-            Geometry featureArea = wfsResponse.features()[0].geometry().getEnvelope();
-            String[] bboxList = entry.getValue().split(",");
-            // Create a polygon from the bbox
-            double bboxMinX = Double.parseDouble(bboxList[1]);
-            double bboxMinY = Double.parseDouble(bboxList[0]);
-            double bboxMaxX = Double.parseDouble(bboxList[3]);
-            double bboxMaxY = Double.parseDouble(bboxList[2]);
-            Coordinate[] bboxCoordinates = new Coordinate[] {
-                new Coordinate(bboxMinX, bboxMinY),
-                new Coordinate(bboxMinX, bboxMaxY),
-                new Coordinate(bboxMaxX, bboxMaxY),
-                new Coordinate(bboxMaxX, bboxMinY),
-                new Coordinate(bboxMinX, bboxMinY),
-            };
-            Polygon bboxPolygon = geometryFactory.createPolygon(bboxCoordinates);
-            Geometry overlap = bboxPolygon.intersection(featureArea);
-
-            if (overlap.getArea() == 0.0) {
-                it.remove();
+    /**
+     * Picks the feature to download out of the WFS search for its feature ID. The feature is
+     * resolved once per job and passed to the later stages
+     * @param wfsRequest StreamingFeatureCollection returned by the search
+     * @return Features containing the footprint and metadata of the feature
+     * @throws IllegalArgumentException if no feature has the ID
+     */
+    private StreamingFeatureCollection.Features resolveFeature(StreamingFeatureCollection wfsRequest)
+        throws IllegalArgumentException {
+
+        if (wfsRequest.features() == null || wfsRequest.features().length == 0) {
+            throw new IllegalArgumentException("No feature found with ID " + this.getFEATURE_ID());
+        }
+        return wfsRequest.features()[0];
+    }
+
+    /**
+     * Splits the feature into 1024x1024 tiles with {@link TilePlan}, dropping the tiles that do not
+     * cover its footprint by at least {@link Builder#minTileOverlap(double)}, and builds the GetMap
+     * URL of each remaining tile
+     * @param feature Features resolved by {@link #resolveFeature(StreamingFeatureCollection)}
+     * @return {@link FullResJob} containing the tile URLs and outputs
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private FullResJob planFullRes(StreamingFeatureCollection.Features feature)
+        throws IllegalArgumentException {
+
+        TilePlan plan = this.planTiles(feature);
+        //Build list of API urls from the plan
+        HashMap<String, String> multiThreadingMap = this.tileUrls(plan, this.getFEATURE_ID(), "");
+        System.out.printf("Number of tiles: %s of a %sx%s grid%n", multiThreadingMap.size(),
+            plan.getCOLS(), plan.getROWS());
+        this.prepareDownloadPath();
+
+        FullResJob job = new FullResJob();
+        job.urls = multiThreadingMap;
+        job.plan = plan;
+        if (this.isGEOTIFF_OUTPUT()) {
+            String fileName = this.getFileName() != null ? this.getFileName() : "fullres";
+            job.geoTiffPath = Paths.get(this.getDownloadPath(), fileName + ".tif");
+            try {
+                Files.createDirectories(job.geoTiffPath.getParent());
+            } catch (IOException ioe) {
+                throw new IllegalArgumentException("Path " + this.getDownloadPath() + " could not be created");
             }
+            if (Files.exists(job.geoTiffPath)) {
+                System.out.println("GeoTIFF output can not be resumed, downloading every tile into "
+                    + job.geoTiffPath);
+            }
+            job.geoTiff = new GeoTiffTileWriter(job.geoTiffPath, multiThreadingMap.keySet(),
+                plan.tileGeometry(), OgcUtils.decodeCrs(this.getSrsname(), true), this.isBIG_TIFF(),
+                GeoTiffTileWriter.bufferedChips(1024, 1024));
+        } else {
+            job.manifest = this.resumeManifest(this.getFEATURE_ID(),
+                plan.bboxes(yFirst(this.getSrsname()), ""), multiThreadingMap);
         }
+        return job;
+    }
+
+    /**
+     * Plans the 1024x1024 tiles of a feature, limited to the bbox if one is set
+     * @param feature Features containing the footprint
+     * @return {@link TilePlan} of the tiles covering the footprint
+     * @throws IllegalArgumentException if builder parameters are not set correctly or the bbox
+     * does not overlap the feature
+     */
+    private TilePlan planTiles(StreamingFeatureCollection.Features feature)
+        throws IllegalArgumentException {
+
+        String srsname = this.getSrsname() != null ? this.getSrsname() : "EPSG:4326";
+        //Size of a 1024 pixel tile in degrees or meters
+        double yValue = srsname.equals("EPSG:4326") ? 0.0042176 : 468.1536;
+        double xValue = srsname.equals("EPSG:4326") ? 0.0054932 : 468.1536;
+        Envelope clip = null;
+        if (this.getBbox() != null) {
+            OgcUtils.validateBbox(this);
+            String[] bboxList = this.getBbox().split(",");
+            clip = new Envelope(Double.parseDouble(bboxList[1]), Double.parseDouble(bboxList[3]),
+                Double.parseDouble(bboxList[0]), Double.parseDouble(bboxList[2]));
+        }
+        TilePlan plan = TilePlan.plan(feature.geometry(), clip, xValue, yValue,
+            this.getMIN_TILE_OVERLAP());
+        this.setSrsname(srsname);
+        return plan;
+    }
+
+    /**
+     * Builds the GetMap URL of every tile of a plan
+     * @param plan {@link TilePlan} of the feature
+     * @param featureId String containing the ID of the feature
+     * @param keyPrefix String prepended to every tile key, empty unless the plan is part of a batch
+     * @return HashMap&lt;String, String&gt; of tile keys to URLs
+     */
+    private HashMap<String, String> tileUrls(TilePlan plan, String featureId, String keyPrefix) {
 
         //Initiate a custom querystring
         Wms fullResWms = new Wms(this);
         HashMap<String, String> querystring = fullResWms.initQueryString();
-        querystring.put("crs", srsname);
+        querystring.put("crs", this.getSrsname());
         querystring.put("width", "1024");
         querystring.put("height", "1024");
-        querystring.put("cql_filter", String.format("featureId='%s'", this.getFEATURE_ID()));
-        if (this.getIMAGE_FORMAT() != null) {
-            OgcUtils.validateImageFormat(this);
-            querystring.put("format", this.getParamsImageFormat());
-        } else {
-            throw new IllegalArgumentException("Must provide an image format");
-        }
+        querystring.put("cql_filter", String.format("featureId='%s'", featureId));
+        querystring.put("format", this.getParamsImageFormat());
+        String url = String.format("%s/%s/%s/ogc/wms", this.getAUTH().getAPI_BASE_URL(),
+            this.getENDPOINT(), this.getAUTH().getAPI_VERSION());
+        return plan.urls(OgcUtils.buildUrl(url, querystring), yFirst(this.getSrsname()), keyPrefix);
+    }
 
-        //Build list of API urls from bbox list
-        HashMap<String, String> multiThreadingMap = new HashMap<>();
-        it = tiles.entrySet().iterator();
-        while (it.hasNext()) {
-            HashMap.Entry<String, String> entry = it.next();
-            querystring.put("bbox", entry.getValue());
-            String url = String.format("%s/%s/%s/ogc/wms", this.getAUTH().getAPI_BASE_URL(),
-                this.getENDPOINT(), this.getAUTH().getAPI_VERSION());
-            HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(url)).newBuilder();
-
-            //Build params from querystring
-            for (Map.Entry<String, String> set : querystring.entrySet()) {
-                urlBuilder.addQueryParameter(set.getKey(), set.getValue());
-            }
-            multiThreadingMap.put(entry.getKey(), urlBuilder.build().toString());
-        }
-        System.out.println("Number of tiles: " + multiThreadingMap.size());
+    /**
+     * Checks whether a projection's bboxes are sent y first
+     * @param srsname String containing the projection
+     * @return boolean true for EPSG:4326, whose bboxes are latitude first in WMS 1.3.0
+     */
+    private static boolean yFirst(String srsname) {
+        return srsname.equals("EPSG:4326");
+    }
+
+    /**
+     * Validates the download path, defaulting to a Tiles folder in the user's downloads
+     * @throws IllegalArgumentException if the download path is not valid
+     */
+    private void prepareDownloadPath() throws IllegalArgumentException {
 
         if (this.getDownloadPath() != null) {
             try {
@@ -294,15 +531,96 @@ public class Streaming extends Ogc {
         } else {
             this.setDownloadPath(String.format("%s/Downloads/%s", System.getProperty("user.home"), "Tiles"));
         }
+    }
 
-        System.out.println("Starting full image download process...");
-        //call util function to handle full download
-        int failedDownloads = OgcUtils.handleMultithreadDownload(multiThreadingMap, this);
+    /**
+     * Opens the manifest of a job and skips the tiles an interrupted run of the same job already
+     * completed
+     * @param jobId String identifying the features of the job
+     * @param bboxes Map&lt;String, String&gt; of tile keys to bboxes
+     * @param urls Map&lt;String, String&gt; of tile keys to URLs. Completed tiles are removed
+     * @return {@link JobManifest} of the job
+     * @throws IllegalArgumentException if the download path can not be written to
+     */
+    private JobManifest resumeManifest(String jobId, Map<String, String> bboxes,
+        Map<String, String> urls) throws IllegalArgumentException {
+
+        JobManifest manifest = new JobManifest(this, jobId);
+        try {
+            int skipped = manifest.resume(bboxes, urls);
+            if (skipped > 0) {
+                System.out.printf("Resuming job, %s tiles already complete, %s remaining%n",
+                    skipped, urls.size());
+            }
+        } catch (IOException ioe) {
+            throw new IllegalArgumentException("Path " + this.getDownloadPath() + " could not be written to");
+        }
+        return manifest;
+    }
+
+    /**
+     * Completes the outputs of a batch once every tile has been requested, mosaicing each feature
+     * if requested
+     * @param job {@link FullResJob} that was downloaded
+     * @param failedDownloads int containing the number of tiles that failed to download
+     */
+    private void finishBatch(FullResJob job, int failedDownloads) {
+
+        System.out.println("Download complete!");
+        System.out.println("Number of failed requests: " + failedDownloads);
+        System.out.println("Tiles downloaded to " + this.getDownloadPath());
+        if (!this.isMOSAIC()) {
+            return;
+        }
+        for (Map.Entry<String, TilePlan> feature : job.plans.entrySet()) {
+            double[] tileGeometry = feature.getValue().tileGeometry();
+            double[] geoTransform = {tileGeometry[0], tileGeometry[1], tileGeometry[2] / 1024,
+                tileGeometry[3] / 1024};
+            String fileName = this.getFileName() != null
+                ? this.getFileName() + "_" + feature.getKey() : feature.getKey();
+            System.out.println("Stitching tiles of " + feature.getKey() + " into mosaic...");
+            String mosaic = OgcUtils.createMosaic(Paths.get(this.getDownloadPath(),
+                feature.getKey()).toString(), this.getIMAGE_FORMAT(), fileName, feature.getValue(),
+                geoTransform, this.getSrsname());
+            if (mosaic != null) {
+                System.out.println("Mosaic written to " + mosaic);
+            }
+        }
+    }
+
+    /**
+     * Completes the outputs of a full resolution download once every tile has been requested
+     * @param job {@link FullResJob} that was downloaded
+     * @param failedDownloads int containing the number of tiles that failed to download
+     */
+    private void finishFullRes(FullResJob job, int failedDownloads) {
 
         System.out.println("Download complete!");
         System.out.println("Number of failed requests: " + failedDownloads);
+        if (job.geoTiff != null) {
+            try {
+                long written = job.geoTiff.finish();
+                System.out.printf("%s tiles written to GeoTIFF %s%n", written, job.geoTiffPath);
+            } catch (IOException ioe) {
+                System.out.println("GeoTIFF could not be written: " + ioe);
+            }
+            return;
+        }
         System.out.println("Tiles downloaded to " + this.getDownloadPath());
 
+        if (this.isMOSAIC()) {
+            double[] tileGeometry = job.plan.tileGeometry();
+            double[] geoTransform = {tileGeometry[0], tileGeometry[1], tileGeometry[2] / 1024,
+                tileGeometry[3] / 1024};
+            String fileName = this.getFileName() != null ? this.getFileName() : "mosaic";
+            System.out.println("Stitching tiles into mosaic...");
+            String mosaic = OgcUtils.createMosaic(this.getDownloadPath(), this.getIMAGE_FORMAT(),
+                fileName, job.plan, geoTransform, this.getSrsname());
+            if (mosaic != null) {
+                System.out.println("Mosaic written to " + mosaic);
+            }
+        }
+
 
     }
 
@@ -0,0 +1,30 @@
+package io.github.maxar.MGPSDK;
+
+/**
+ * Thrown when an API keeps throttling a request (429) after it was retried. The API's
+ * <code>Retry-After</code> header, when present, says how long to wait before calling again
+ */
+public class ThrottledException extends ApiException {
+
+    private final long RETRY_AFTER_MILLIS;
+
+    /**
+     * Constructor for <code>ThrottledException</code>
+     * @param message String containing the detail message
+     * @param statusCode int containing the HTTP status code
+     * @param body String containing the response body, may be empty
+     * @param retryAfterMillis long containing the wait requested by the API, -1 if none
+     */
+    public ThrottledException(String message, int statusCode, String body, long retryAfterMillis) {
+        super(message, statusCode, body);
+        this.RETRY_AFTER_MILLIS = retryAfterMillis;
+    }
+
+    /**
+     * Gets how long the API asked callers to wait before sending another request
+     * @return long containing the wait in milliseconds, -1 if the API did not say
+     */
+    public long getRetryAfterMillis() {
+        return this.RETRY_AFTER_MILLIS;
+    }
+}
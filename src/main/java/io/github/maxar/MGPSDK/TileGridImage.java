@@ -0,0 +1,225 @@
+package io.github.maxar.MGPSDK;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+
+/**
+ * A <code>RenderedImage</code> whose tiles are the chips of a full resolution download. Tiles are
+ * only loaded from their {@link TileSource} when an image writer asks for them and are not kept
+ * afterwards, so an output of any size can be encoded while holding a single chip in memory.
+ * Missing chips are returned as empty (zero filled) tiles
+ */
+class TileGridImage implements RenderedImage {
+
+    /**
+     * Supplies the decoded chip for a grid position
+     */
+    interface TileSource {
+
+        /**
+         * Loads the chip for a grid position
+         * @param col int containing the tile column
+         * @param row int containing the tile row, 0 being the top row
+         * @return BufferedImage containing the chip, or null if the chip does not exist
+         * @throws IOException if the chip can not be read
+         */
+        BufferedImage load(int col, int row) throws IOException;
+    }
+
+    private final int COLS;
+    private final int ROWS;
+    private final int TILE_WIDTH;
+    private final int TILE_HEIGHT;
+    private final ColorModel COLOR_MODEL;
+    private final SampleModel SAMPLE_MODEL;
+    private final TileSource SOURCE;
+
+    /**
+     * Constructor for <code>TileGridImage</code>
+     * @param cols int containing the number of tile columns
+     * @param rows int containing the number of tile rows
+     * @param tileWidth int containing the width of every chip in pixels
+     * @param tileHeight int containing the height of every chip in pixels
+     * @param reference BufferedImage whose color and sample model every tile is converted to
+     * @param source {@link TileSource} the chips are loaded from
+     */
+    TileGridImage(int cols, int rows, int tileWidth, int tileHeight, BufferedImage reference,
+        TileSource source) {
+        this.COLS = cols;
+        this.ROWS = rows;
+        this.TILE_WIDTH = tileWidth;
+        this.TILE_HEIGHT = tileHeight;
+        this.COLOR_MODEL = reference.getColorModel();
+        this.SAMPLE_MODEL = reference.getSampleModel().createCompatibleSampleModel(tileWidth,
+            tileHeight);
+        this.SOURCE = source;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+
+        BufferedImage chip;
+        try {
+            chip = SOURCE.load(tileX, tileY);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        Point origin = new Point(tileX * TILE_WIDTH, tileY * TILE_HEIGHT);
+        if (chip == null) {
+            return Raster.createWritableRaster(SAMPLE_MODEL, origin);
+        }
+        if (chip.getWidth() != TILE_WIDTH || chip.getHeight() != TILE_HEIGHT
+            || !chip.getColorModel().equals(COLOR_MODEL)
+            || chip.getSampleModel().getNumBands() != SAMPLE_MODEL.getNumBands()) {
+            chip = this.convert(chip);
+        }
+        return chip.getRaster().createTranslatedChild(origin.x, origin.y);
+    }
+
+    /**
+     * Redraws a chip that does not match the grid's size or color model
+     * @param chip BufferedImage to convert
+     * @return BufferedImage matching the grid
+     */
+    private BufferedImage convert(BufferedImage chip) {
+
+        WritableRaster raster = COLOR_MODEL.createCompatibleWritableRaster(TILE_WIDTH, TILE_HEIGHT);
+        BufferedImage converted = new BufferedImage(COLOR_MODEL, raster,
+            COLOR_MODEL.isAlphaPremultiplied(), null);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(chip, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        return this.copyData(Raster.createWritableRaster(
+            SAMPLE_MODEL.createCompatibleSampleModel(rect.width, rect.height),
+            new Point(rect.x, rect.y)));
+    }
+
+    @Override
+    public Raster getData() {
+        return this.getData(new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+
+        if (raster == null) {
+            raster = Raster.createWritableRaster(SAMPLE_MODEL.createCompatibleSampleModel(
+                this.getWidth(), this.getHeight()), new Point(0, 0));
+        }
+        Rectangle bounds = raster.getBounds();
+        int minTileX = Math.max(0, bounds.x / TILE_WIDTH);
+        int minTileY = Math.max(0, bounds.y / TILE_HEIGHT);
+        int maxTileX = Math.min(COLS - 1, (bounds.x + bounds.width - 1) / TILE_WIDTH);
+        int maxTileY = Math.min(ROWS - 1, (bounds.y + bounds.height - 1) / TILE_HEIGHT);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                raster.setRect(this.getTile(tileX, tileY));
+            }
+        }
+        return raster;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return COLOR_MODEL;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return SAMPLE_MODEL;
+    }
+
+    @Override
+    public int getWidth() {
+        return COLS * TILE_WIDTH;
+    }
+
+    @Override
+    public int getHeight() {
+        return ROWS * TILE_HEIGHT;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return COLS;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return ROWS;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return TILE_WIDTH;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return TILE_HEIGHT;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+}
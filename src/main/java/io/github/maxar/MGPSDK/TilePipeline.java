@@ -0,0 +1,287 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import okhttp3.ResponseBody;
+
+/**
+ * Stages a full resolution download runs through once a tile has been fetched. Fetch workers read
+ * each tile into a pooled buffer and hand it over with {@link #submit(String, ByteBuffer)}, going
+ * straight back to the network while the tile is optionally decoded and then written on the
+ * pipeline's own threads. Every stage holds a bounded number of tiles, waiting and in progress,
+ * and handing a tile to a full stage blocks, so a slow disk slows the fetch workers down instead
+ * of letting buffered tiles pile up in memory. Tiles going into a {@link GeoTiffTileWriter} skip
+ * the stages and are handed to the writer on the fetch worker, so the writer's own bound on the
+ * chips it buffers is what slows the fetch workers down
+ */
+class TilePipeline {
+
+    //Enough writers to keep a disk busy without seeking between too many files at once
+    static final int WRITE_THREADS = 2;
+    //Tiles a stage may hold waiting for each of its threads before the stage feeding it blocks
+    static final int QUEUE_PER_THREAD = 2;
+
+    private final Ogc OGC;
+    private final GeoTiffTileWriter GEO_TIFF;
+    private final JobManifest MANIFEST;
+    private final BiConsumer<String, Boolean> DONE;
+    private final ImageBufferPool BUFFERS;
+    private final Stage VALIDATE;
+    private final Stage WRITE;
+
+    /**
+     * Constructor for <code>TilePipeline</code>. Unless the tiles go into a GeoTIFF, starts the
+     * decode stage if {@link Ogc.Builder#validateTiles()} is set, and the write stage
+     * @param ogc Instance of the {@link Streaming} class
+     * @param geoTiff GeoTiffTileWriter receiving the chips, or null to write individual files
+     * @param manifest JobManifest recording the size and checksum of each written tile, or null
+     * @param done BiConsumer called once for every tile with its key and whether it was stored
+     */
+    TilePipeline(Ogc ogc, GeoTiffTileWriter geoTiff, JobManifest manifest,
+        BiConsumer<String, Boolean> done) {
+        this.OGC = ogc;
+        this.GEO_TIFF = geoTiff;
+        this.MANIFEST = manifest;
+        this.DONE = done;
+        int decodeThreads = Runtime.getRuntime().availableProcessors();
+        this.VALIDATE = ogc.isVALIDATE_TILES() && geoTiff == null ? new Stage(decodeThreads) : null;
+        this.WRITE = geoTiff == null ? new Stage(WRITE_THREADS) : null;
+        this.BUFFERS = new ImageBufferPool((WRITE_THREADS
+            + (this.VALIDATE != null ? decodeThreads : 0)) * (QUEUE_PER_THREAD + 1));
+    }
+
+    /**
+     * Reads a tile into a buffer from the pipeline's pool. Run on the fetch worker so the
+     * connection is released as soon as the body has arrived
+     * @param body ResponseBody of the tile, consumed and closed
+     * @return ByteBuffer flipped for reading, holding the whole tile
+     * @throws IOException if the body can not be read
+     */
+    ByteBuffer read(ResponseBody body) throws IOException {
+        return this.BUFFERS.read(body);
+    }
+
+    /**
+     * Gives back a buffer returned by {@link #read(ResponseBody)} for a tile that is not submitted
+     * @param chip ByteBuffer to give back, or null
+     */
+    void release(ByteBuffer chip) {
+        this.BUFFERS.release(chip);
+    }
+
+    /**
+     * Hands a fetched tile to the first stage, blocking while that stage is full. Tiles going into
+     * a GeoTIFF are decoded and written on the calling thread instead, blocking while the writer
+     * has no room for them. A stage holding chips the writer can not take yet would otherwise
+     * keep out the chip the writer is waiting for
+     * @param key String containing the tile key
+     * @param chip ByteBuffer returned by {@link #read(ResponseBody)}, owned by the pipeline from
+     * here on
+     */
+    void submit(String key, ByteBuffer chip) {
+
+        if (this.GEO_TIFF != null) {
+            if (!this.OGC.isVALIDATE_TILES() || this.decodes(key, chip)) {
+                this.write(key, chip);
+            }
+            return;
+        }
+        try {
+            if (this.VALIDATE != null) {
+                this.VALIDATE.submit(() -> this.validate(key, chip));
+            } else {
+                this.WRITE.submit(() -> this.write(key, chip));
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            this.finish(key, chip, false);
+        } catch (RejectedExecutionException ree) {
+            this.finish(key, chip, false);
+        }
+    }
+
+    /**
+     * Records a tile that could not be fetched, so every tile is reported exactly once and the
+     * GeoTIFF writer, if any, stops waiting for it
+     * @param key String containing the tile key
+     */
+    void fail(String key) {
+
+        if (this.GEO_TIFF != null) {
+            this.GEO_TIFF.skip(key);
+        }
+        this.DONE.accept(key, false);
+    }
+
+    /**
+     * Decodes a tile and passes it on to the write stage if it is an image
+     * @param key String containing the tile key
+     * @param chip ByteBuffer holding the tile
+     */
+    private void validate(String key, ByteBuffer chip) {
+
+        if (!this.decodes(key, chip)) {
+            return;
+        }
+        try {
+            this.WRITE.submit(() -> this.write(key, chip));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            this.finish(key, chip, false);
+        } catch (RejectedExecutionException ree) {
+            this.finish(key, chip, false);
+        }
+    }
+
+    /**
+     * Decodes a tile, reporting it as failed if it is not an image
+     * @param key String containing the tile key
+     * @param chip ByteBuffer holding the tile, released if it can not be decoded
+     * @return boolean true if the tile decoded
+     */
+    private boolean decodes(String key, ByteBuffer chip) {
+
+        boolean valid;
+        try {
+            valid = ImageIO.read(new ByteArrayInputStream(chip.array(),
+                chip.arrayOffset() + chip.position(), chip.remaining())) != null;
+        } catch (IOException | RuntimeException e) {
+            valid = false;
+        }
+        if (!valid) {
+            System.out.println("Tile " + key + " could not be decoded");
+            this.finish(key, chip, false);
+        }
+        return valid;
+    }
+
+    /**
+     * Stores a tile, either in the GeoTIFF being written or as a file in the download path,
+     * calculating its CRC32 for the manifest on the way
+     * @param key String containing the tile key
+     * @param chip ByteBuffer holding the tile
+     */
+    private void write(String key, ByteBuffer chip) {
+
+        boolean stored = false;
+        try {
+            if (this.GEO_TIFF != null) {
+                //The writer keeps chips until it reaches their slot, so it gets its own copy
+                int start = chip.arrayOffset() + chip.position();
+                this.GEO_TIFF.accept(key, Arrays.copyOfRange(chip.array(), start,
+                    start + chip.remaining()));
+            } else {
+                CRC32 crc = new CRC32();
+                long bytes = BodyWriter.write(chip, Paths.get(this.OGC.getDownloadPath(),
+                    key + "." + this.OGC.getIMAGE_FORMAT()), crc);
+                if (this.MANIFEST != null) {
+                    this.MANIFEST.complete(key, bytes, crc.getValue());
+                }
+            }
+            stored = true;
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Tile %s could not be stored: %s%n", key, e);
+        } finally {
+            this.finish(key, chip, stored);
+        }
+    }
+
+    /**
+     * Returns a tile's buffer to the pool and reports the tile
+     * @param key String containing the tile key
+     * @param chip ByteBuffer holding the tile
+     * @param stored boolean true if the tile was stored
+     */
+    private void finish(String key, ByteBuffer chip, boolean stored) {
+
+        this.BUFFERS.release(chip);
+        if (!stored && this.GEO_TIFF != null) {
+            //Its slot is written empty rather than holding back the chips after it
+            this.GEO_TIFF.skip(key);
+        }
+        this.DONE.accept(key, stored);
+    }
+
+    /**
+     * Waits for the tiles still in the pipeline to be stored and stops its threads
+     * @param timeout long containing the longest time to wait, in seconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void shutdown(long timeout) throws InterruptedException {
+
+        if (this.VALIDATE != null) {
+            this.VALIDATE.executor.shutdown();
+            this.VALIDATE.executor.awaitTermination(timeout, TimeUnit.SECONDS);
+        }
+        if (this.WRITE != null) {
+            this.WRITE.executor.shutdown();
+            this.WRITE.executor.awaitTermination(timeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the pipeline's threads without waiting for the tiles in it
+     */
+    void shutdownNow() {
+
+        if (this.VALIDATE != null) {
+            this.VALIDATE.executor.shutdownNow();
+        }
+        if (this.WRITE != null) {
+            this.WRITE.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Pool of threads running one stage of the pipeline. A semaphore counts the tiles the stage
+     * holds, so its queue never grows past {@value #QUEUE_PER_THREAD} tiles per thread
+     */
+    private static class Stage {
+
+        private final ExecutorService executor;
+        private final Semaphore slots;
+
+        /**
+         * Constructor for <code>Stage</code>
+         * @param threads int containing the number of threads running the stage
+         */
+        Stage(int threads) {
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.slots = new Semaphore(threads * (QUEUE_PER_THREAD + 1));
+        }
+
+        /**
+         * Queues work on the stage, blocking while the stage is full
+         * @param work Runnable processing one tile
+         * @throws InterruptedException if interrupted while waiting for room
+         * @throws RejectedExecutionException if the stage has been shut down
+         */
+        void submit(Runnable work) throws InterruptedException {
+
+            this.slots.acquire();
+            try {
+                this.executor.execute(() -> {
+                    try {
+                        work.run();
+                    } finally {
+                        this.slots.release();
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                this.slots.release();
+                throw ree;
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.maxar.MGPSDK;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import okhttp3.HttpUrl;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Tile grid of a full resolution download. Tile bounds are computed from the grid origin and the
+ * tile size rather than stored, only the grid positions of the tiles covering the footprint are
+ * kept, packed row-major into a single <code>int[]</code>. Rows are numbered from the top of the
+ * grid, tiles are keyed <code>c{col}_r{row}</code>
+ */
+class TilePlan {
+
+    private final double ORIGIN_X;
+    private final double TOP_Y;
+    private final double TILE_WIDTH;
+    private final double TILE_HEIGHT;
+    private final int COLS;
+    private final int ROWS;
+    private final int[] CELLS;
+
+    /**
+     * Constructor for <code>TilePlan</code>
+     * @param originX double containing the left edge of the grid
+     * @param topY double containing the top edge of the grid
+     * @param tileWidth double containing the width of a tile in projection units
+     * @param tileHeight double containing the height of a tile in projection units
+     * @param cols int containing the number of columns of the grid
+     * @param rows int containing the number of rows of the grid
+     * @param cells int[] containing <code>row * cols + col</code> of each planned tile, row-major
+     */
+    private TilePlan(double originX, double topY, double tileWidth, double tileHeight, int cols,
+        int rows, int[] cells) {
+        this.ORIGIN_X = originX;
+        this.TOP_Y = topY;
+        this.TILE_WIDTH = tileWidth;
+        this.TILE_HEIGHT = tileHeight;
+        this.COLS = cols;
+        this.ROWS = rows;
+        this.CELLS = cells;
+    }
+
+    /**
+     * Checks that a minimum tile overlap set on the builder is valid
+     * @param fraction double containing the fraction, 0 if not set
+     * @return double containing the validated fraction
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1
+     */
+    static double validateOverlap(double fraction) throws IllegalArgumentException {
+
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Minimum tile overlap must be between 0 and 1. "
+                + "Overlap provided: " + fraction);
+        }
+        return fraction;
+    }
+
+    /**
+     * Plans the tiles covering a footprint. The grid starts at the lower left corner of the
+     * footprint's extent, clipped to a bbox if one is given. Tiles are tested against the
+     * footprint itself, not its envelope, so tiles of a rotated or irregular strip that hold no
+     * imagery are not requested
+     * @param footprint Geometry of the feature, in the grid's projection
+     * @param clip Envelope the grid is limited to, or null for the whole footprint
+     * @param tileWidth double containing the width of a tile in projection units
+     * @param tileHeight double containing the height of a tile in projection units
+     * @param minOverlap double containing the fraction of a tile the footprint must cover, 0 to
+     * keep every tile touching it
+     * @return <code>TilePlan</code> of the tiles covering the footprint
+     * @throws IllegalArgumentException if the clip does not overlap the footprint
+     */
+    static TilePlan plan(Geometry footprint, Envelope clip, double tileWidth, double tileHeight,
+        double minOverlap) throws IllegalArgumentException {
+
+        Envelope extent = footprint.getEnvelopeInternal();
+        if (clip != null) {
+            extent = extent.intersection(clip);
+        }
+        if (extent.isNull()) {
+            throw new IllegalArgumentException("Bbox does not overlap the feature");
+        }
+        int cols = Math.max(1, (int) Math.ceil(extent.getWidth() / tileWidth));
+        int rows = Math.max(1, (int) Math.ceil(extent.getHeight() / tileHeight));
+        if ((long) cols * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles to plan: " + cols + "x" + rows);
+        }
+        double originX = extent.getMinX();
+        double topY = extent.getMinY() + rows * tileHeight;
+
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(footprint);
+        GeometryFactory geometryFactory = footprint.getFactory();
+        int[] cells = new int[cols * rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            double maxY = topY - row * tileHeight;
+            double minY = maxY - tileHeight;
+            for (int col = 0; col < cols; col++) {
+                double minX = originX + col * tileWidth;
+                double maxX = minX + tileWidth;
+                Geometry tile = geometryFactory.toGeometry(new Envelope(minX, maxX, minY, maxY));
+                if (covers(prepared, tile, minOverlap)) {
+                    cells[count++] = row * cols + col;
+                }
+            }
+        }
+        return new TilePlan(originX, topY, tileWidth, tileHeight, cols, rows,
+            Arrays.copyOf(cells, count));
+    }
+
+    /**
+     * Checks whether a footprint covers enough of a tile for it to be downloaded. The overlap is
+     * only measured for tiles on the edge of the footprint, tiles fully inside it are kept and
+     * tiles outside it dropped by the prepared geometry without computing an intersection
+     * @param footprint PreparedGeometry of the feature
+     * @param tile Geometry of the tile
+     * @param minOverlap double containing the fraction of the tile the footprint must cover
+     * @return boolean true if the tile should be downloaded
+     */
+    private static boolean covers(PreparedGeometry footprint, Geometry tile, double minOverlap) {
+
+        if (!footprint.intersects(tile)) {
+            return false;
+        }
+        if (minOverlap <= 0 || footprint.covers(tile)) {
+            return true;
+        }
+        return footprint.getGeometry().intersection(tile).getArea() >= minOverlap * tile.getArea();
+    }
+
+    /**
+     * Gets the number of planned tiles
+     * @return int containing the number of tiles
+     */
+    int size() {
+        return CELLS.length;
+    }
+
+    /**
+     * Gets the key of a planned tile
+     * @param i int containing the index of the tile in the plan
+     * @return String containing the c{col}_r{row} key
+     */
+    String key(int i) {
+        return "c" + (CELLS[i] % COLS) + "_r" + (CELLS[i] / COLS);
+    }
+
+    /**
+     * Gets the key of every planned tile
+     * @return Set&lt;String&gt; containing the c{col}_r{row} keys
+     */
+    Set<String> keys() {
+
+        Set<String> keys = new HashSet<>(CELLS.length * 4 / 3 + 1);
+        for (int i = 0; i < CELLS.length; i++) {
+            keys.add(this.key(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the bbox of a planned tile as sent in a GetMap request
+     * @param i int containing the index of the tile in the plan
+     * @param yFirst boolean true if the projection lists y first, as EPSG:4326 does in WMS 1.3.0
+     * @return String containing the comma separated bbox
+     */
+    String bbox(int i, boolean yFirst) {
+
+        double minX = ORIGIN_X + (CELLS[i] % COLS) * TILE_WIDTH;
+        double maxY = TOP_Y - (CELLS[i] / COLS) * TILE_HEIGHT;
+        double minY = maxY - TILE_HEIGHT;
+        double maxX = minX + TILE_WIDTH;
+        StringBuilder bbox = new StringBuilder(80);
+        if (yFirst) {
+            bbox.append(minY).append(',').append(minX).append(',').append(maxY).append(',').append(maxX);
+        } else {
+            bbox.append(minX).append(',').append(minY).append(',').append(maxX).append(',').append(maxY);
+        }
+        return bbox.toString();
+    }
+
+    /**
+     * Gets the bbox of every planned tile
+     * @param yFirst boolean true if the projection lists y first
+     * @param keyPrefix String prepended to every tile key, empty unless the plan is part of a batch
+     * @return HashMap&lt;String, String&gt; of tile keys to bboxes
+     */
+    HashMap<String, String> bboxes(boolean yFirst, String keyPrefix) {
+
+        HashMap<String, String> bboxes = new HashMap<>(CELLS.length * 4 / 3 + 1);
+        for (int i = 0; i < CELLS.length; i++) {
+            bboxes.put(keyPrefix + this.key(i), this.bbox(i, yFirst));
+        }
+        return bboxes;
+    }
+
+    /**
+     * Builds the GetMap URL of every planned tile
+     * @param baseUrl HttpUrl containing every GetMap parameter except the bbox
+     * @param yFirst boolean true if the projection lists y first
+     * @param keyPrefix String prepended to every tile key, empty unless the plan is part of a batch
+     * @return HashMap&lt;String, String&gt; of tile keys to URLs
+     */
+    HashMap<String, String> urls(HttpUrl baseUrl, boolean yFirst, String keyPrefix) {
+
+        HashMap<String, String> urls = new HashMap<>(CELLS.length * 4 / 3 + 1);
+        for (int i = 0; i < CELLS.length; i++) {
+            urls.put(keyPrefix + this.key(i), baseUrl.newBuilder()
+                .addQueryParameter("bbox", this.bbox(i, yFirst))
+                .build()
+                .toString());
+        }
+        return urls;
+    }
+
+    /**
+     * Gets the upper left corner and tile size of the grid
+     * @return double[] containing the left edge, top edge, tile width and tile height
+     */
+    double[] tileGeometry() {
+        return new double[] {ORIGIN_X, TOP_Y, TILE_WIDTH, TILE_HEIGHT};
+    }
+
+    int getCOLS() {
+        return COLS;
+    }
+
+    int getROWS() {
+        return ROWS;
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.maxar.MGPSDK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Orders tile and chunk requests along a space filling curve before they are dispatched so that
+ * neighbouring tiles are requested close together in time. This keeps server side caches warm and
+ * means a partially finished download covers a contiguous region instead of a random scatter.
+ * Supported orders:
+ * <ul>
+ *     <li>hilbert (default)</li>
+ *     <li>zorder</li>
+ *     <li>rowmajor</li>
+ * </ul>
+ */
+class TileScheduler {
+
+    static final String HILBERT = "hilbert";
+    static final String Z_ORDER = "zorder";
+    static final String ROW_MAJOR = "rowmajor";
+
+    //Full res keys look like c{col}_r{row}, WMTS keys look like [row, col, zoom]
+    private static final Pattern FULL_RES_KEY = Pattern.compile("c(\\d+)_r(\\d+)");
+    private static final Pattern WMTS_KEY = Pattern.compile("\\[(\\d+), ?(\\d+), ?\\d+]");
+
+    /**
+     * <code>TileScheduler</code> can not be instantiated
+     * @throws UnsupportedOperationException always
+     */
+    TileScheduler() {
+        throw new UnsupportedOperationException("TileScheduler can not be instantiated");
+    }
+
+    /**
+     * Validates a dispatch order, defaulting to Hilbert
+     * @param dispatchOrder String containing the dispatch order, may be null
+     * @return String containing the validated dispatch order
+     * @throws IllegalArgumentException if the order is not recognized
+     */
+    static String validateDispatchOrder(String dispatchOrder) throws IllegalArgumentException {
+
+        if (dispatchOrder == null) {
+            return HILBERT;
+        }
+        String order = dispatchOrder.toLowerCase();
+        if (!Arrays.asList(HILBERT, Z_ORDER, ROW_MAJOR).contains(order)) {
+            throw new IllegalArgumentException("Dispatch order not recognized, please use hilbert, "
+                + "zorder or rowmajor. Order provided: " + dispatchOrder);
+        }
+        return order;
+    }
+
+    /**
+     * Orders a map of tile keys to request URLs for dispatch. Keys must contain the tile grid
+     * position, either as <code>c{col}_r{row}</code> or <code>[row, col, zoom]</code>. If any key
+     * has no grid position the entries are returned in map order. Keys of a batch spanning several
+     * grids are prefixed with their grid, <code>{grid}/c{col}_r{row}</code>, each grid is then
+     * dispatched whole, one after another
+     * @param tiles Map&lt;String, String&gt; of tile keys to request URLs
+     * @param dispatchOrder String containing the dispatch order
+     * @return List of entries in dispatch order
+     */
+    static List<Entry<String, String>> order(Map<String, String> tiles, String dispatchOrder) {
+
+        String order = validateDispatchOrder(dispatchOrder);
+        List<Entry<String, String>> entries = new ArrayList<>(tiles.entrySet());
+        int size = entries.size();
+        int[] cols = new int[size];
+        int[] rows = new int[size];
+        int[] grids = new int[size];
+        Map<String, Integer> gridIndex = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = entries.get(i).getKey();
+            int slash = key.lastIndexOf('/');
+            int[] position = gridPosition(key.substring(slash + 1));
+            if (position == null) {
+                return entries;
+            }
+            cols[i] = position[0];
+            rows[i] = position[1];
+            String grid = slash < 0 ? "" : key.substring(0, slash);
+            Integer index = gridIndex.get(grid);
+            if (index == null) {
+                index = gridIndex.size();
+                gridIndex.put(grid, index);
+            }
+            grids[i] = index;
+        }
+        long[] keys = curveKeys(cols, rows, order);
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, Comparator.<Integer>comparingInt(i -> grids[i])
+            .thenComparingLong(i -> keys[i]));
+        List<Entry<String, String>> ordered = new ArrayList<>(size);
+        for (Integer index : indices) {
+            ordered.add(entries.get(index));
+        }
+        return ordered;
+    }
+
+    /**
+     * Calculates the position of each tile along the requested curve. Positions are normalized to
+     * the smallest power of two square that covers the grid
+     * @param cols int[] containing tile columns
+     * @param rows int[] containing tile rows
+     * @param order String containing a validated dispatch order
+     * @return long[] containing the curve index of each tile
+     */
+    static long[] curveKeys(int[] cols, int[] rows, String order) {
+
+        int minCol = Integer.MAX_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxCol = Integer.MIN_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        for (int i = 0; i < cols.length; i++) {
+            minCol = Math.min(minCol, cols[i]);
+            maxCol = Math.max(maxCol, cols[i]);
+            minRow = Math.min(minRow, rows[i]);
+            maxRow = Math.max(maxRow, rows[i]);
+        }
+        int extent = Math.max(maxCol - minCol, maxRow - minRow) + 1;
+        int side = extent <= 1 ? 1 : Integer.highestOneBit(extent - 1) << 1;
+        long[] keys = new long[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            int x = cols[i] - minCol;
+            int y = rows[i] - minRow;
+            switch (order) {
+                case HILBERT -> keys[i] = hilbertIndex(side, x, y);
+                case Z_ORDER -> keys[i] = zOrderIndex(x, y);
+                default -> keys[i] = (long) y * side + x;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Converts a grid position to its distance along a Hilbert curve filling an n by n square
+     * @param n int side of the square, must be a power of two
+     * @param x int column inside the square
+     * @param y int row inside the square
+     * @return long distance along the curve
+     */
+    static long hilbertIndex(int n, int x, int y) {
+
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            //Rotate the quadrant so the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Converts a grid position to its Morton (Z-order) index by interleaving the bits of x and y
+     * @param x int column
+     * @param y int row
+     * @return long Morton index
+     */
+    static long zOrderIndex(int x, int y) {
+        return spreadBits(x) | (spreadBits(y) << 1);
+    }
+
+    /**
+     * Spreads the 32 bits of a value out to the even bits of a long
+     * @param value int value to spread
+     * @return long with the bits of value in the even positions
+     */
+    private static long spreadBits(int value) {
+
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Parses the tile grid position out of a tile key
+     * @param key String containing the tile key
+     * @return int[] containing column and row, or null if the key has no grid position
+     */
+    private static int[] gridPosition(String key) {
+
+        Matcher fullRes = FULL_RES_KEY.matcher(key);
+        if (fullRes.matches()) {
+            return new int[] {Integer.parseInt(fullRes.group(1)), Integer.parseInt(fullRes.group(2))};
+        }
+        Matcher wmts = WMTS_KEY.matcher(key);
+        if (wmts.matches()) {
+            return new int[] {Integer.parseInt(wmts.group(2)), Integer.parseInt(wmts.group(1))};
+        }
+        return null;
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Walks the WMTS tile pyramid over a bbox for a range of zoom levels and downloads every tile
+ * into a local tile cache laid out as <code>{downloadPath}/{zoom}/{row}_{col}.{format}</code>.
+ * Tiles already present in the cache are skipped and completed zoom levels are recorded in a
+ * checkpoint file, keyed by bbox, projection, layer and format, so that an interrupted seed can be
+ * resumed. Used by {@link Ogc#seedTiles(int, int)}
+ */
+class TileSeeder {
+
+    private final Ogc OGC;
+    private final Wmts WMTS;
+    private final int MIN_ZOOM;
+    private final int MAX_ZOOM;
+    private final int THREAD_NUMBER;
+    private final Path CACHE_PATH;
+    private final Path CHECKPOINT_PATH;
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong tilesProcessed = new AtomicLong();
+    private final AtomicLong tilesSkipped = new AtomicLong();
+    private final AtomicInteger percentage = new AtomicInteger();
+    //One retry budget for the whole seed
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    private long totalTiles;
+    private long startTime;
+
+    /**
+     * Constructor for <code>TileSeeder</code>. Bbox, srsname and image format must already be
+     * validated by the caller
+     * @param ogc Instance of the {@link Ogc} child class
+     * @param minZoom int containing the first zoom level to seed
+     * @param maxZoom int containing the last zoom level to seed
+     */
+    TileSeeder(Ogc ogc, int minZoom, int maxZoom) {
+        this.OGC = ogc;
+        this.WMTS = new Wmts(ogc);
+        this.MIN_ZOOM = minZoom;
+        this.MAX_ZOOM = maxZoom;
+        this.THREAD_NUMBER = ogc.getTHREAD_NUMBER();
+        this.CACHE_PATH = Paths.get(ogc.getDownloadPath());
+        String seedKey = Integer.toHexString(Objects.hash(ogc.getBbox(), ogc.getSrsname(),
+            ogc.getLayer(), ogc.getIMAGE_FORMAT(), ogc.getENDPOINT()));
+        this.CHECKPOINT_PATH = this.CACHE_PATH.resolve(".seed-checkpoint-" + seedKey);
+    }
+
+    /**
+     * Seeds every zoom level that is not already recorded in the checkpoint file
+     * @return long containing the number of tiles that failed to download
+     */
+    long seed() {
+
+        Set<Integer> completedZooms = this.readCheckpoint();
+        //Tile ranges are computed once per zoom level, tiles inside a range are not revalidated
+        long[][] tileRanges = new long[MAX_ZOOM - MIN_ZOOM + 1][];
+        for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+            if (completedZooms.contains(zoom)) {
+                System.out.printf("Zoom level %s already seeded, skipping%n", zoom);
+                continue;
+            }
+            long[] tileRange = Wmts.wmtsTileRange(OGC.getBbox(), zoom, OGC.getSrsname());
+            tileRanges[zoom - MIN_ZOOM] = tileRange;
+            this.totalTiles += (tileRange[1] - tileRange[0] + 1) * (tileRange[3] - tileRange[2] + 1);
+        }
+        System.out.println("Number of tiles: " + this.totalTiles);
+
+        ExecutorService executors = Executors.newFixedThreadPool(THREAD_NUMBER);
+        //Bounds the number of queued tiles so large pyramids are never fully materialized
+        int maxPermits = THREAD_NUMBER * 2;
+        Semaphore permits = new Semaphore(maxPermits);
+        String token = OGC.getAUTH().refreshToken();
+        OkHttpClient client = OgcUtils.httpClient();
+        long failed = 0;
+        this.startTime = System.nanoTime();
+        try {
+            for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+                long[] tileRange = tileRanges[zoom - MIN_ZOOM];
+                if (tileRange == null) {
+                    continue;
+                }
+                Path zoomPath = CACHE_PATH.resolve(String.valueOf(zoom));
+                Files.createDirectories(zoomPath);
+                HttpUrl tileMatrixUrl = WMTS.wmtsTileMatrixUrl(zoom);
+                AtomicLong zoomFailures = new AtomicLong();
+                for (long i = tileRange[2]; i <= tileRange[3]; i++) {
+                    for (long j = tileRange[0]; j <= tileRange[1]; j++) {
+                        Path tilePath = zoomPath.resolve(String.format("%s_%s.%s", i, j,
+                            OGC.getIMAGE_FORMAT()));
+                        if (Files.exists(tilePath)) {
+                            this.tilesSkipped.incrementAndGet();
+                            this.reportProgress();
+                            continue;
+                        }
+                        String url = tileMatrixUrl.newBuilder()
+                            .addQueryParameter("tileRow", String.valueOf(i))
+                            .addQueryParameter("tileCol", String.valueOf(j))
+                            .build()
+                            .toString();
+                        permits.acquire();
+                        executors.execute(() -> {
+                            try {
+                                if (!this.fetchTile(client, token, url, tilePath)) {
+                                    zoomFailures.incrementAndGet();
+                                }
+                            } finally {
+                                this.reportProgress();
+                                permits.release();
+                            }
+                        });
+                    }
+                }
+                //Wait for every tile of this zoom level before checkpointing it
+                permits.acquire(maxPermits);
+                permits.release(maxPermits);
+                if (zoomFailures.get() == 0) {
+                    this.writeCheckpoint(zoom);
+                }
+                failed += zoomFailures.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            System.out.println("Tile seeding interrupted: " + ie + " rerun to resume");
+        } catch (IOException ioe) {
+            throw new IllegalArgumentException("Unable to write to tile cache " + CACHE_PATH, ioe);
+        } finally {
+            executors.shutdown();
+            try {
+                executors.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.printf("Tiles skipped (already cached): %s%n", this.tilesSkipped.get());
+        return failed;
+    }
+
+    /**
+     * Downloads a single tile into the cache with {@link BodyWriter}, so that a partially written
+     * tile is never mistaken for a cached one
+     * @param client <code>OkHttpClient</code> shared by all tiles
+     * @param token String containing the bearer token
+     * @param url String containing the GetTile URL
+     * @param tilePath Path the tile is cached at
+     * @return boolean true if the tile was downloaded
+     */
+    private boolean fetchTile(OkHttpClient client, String token, String url, Path tilePath) {
+
+        Request getRequest = new Request.Builder()
+            .header("Authorization", "Bearer " + token)
+            .url(url)
+            .build();
+        try (Response response = this.retryPolicy.execute(getRequest,
+            () -> OgcUtils.execute(client, getRequest))) {
+            if (response.code() != 200 || response.body() == null) {
+                return false;
+            }
+            this.bytesDownloaded.addAndGet(BodyWriter.write(response.body(), tilePath, null));
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Prints the percentage of tiles processed and the download rate every 25%
+     */
+    private void reportProgress() {
+
+        long processed = this.tilesProcessed.incrementAndGet();
+        int quarter = (int) (processed * 4 / Math.max(this.totalTiles, 1));
+        int current = this.percentage.get();
+        if (quarter > current && this.percentage.compareAndSet(current, quarter)) {
+            double seconds = (System.nanoTime() - this.startTime) / 1e9;
+            double kbPerSecond = seconds > 0 ? this.bytesDownloaded.get() / 1024.0 / seconds : 0;
+            System.out.printf("%s%% complete (%s of %s tiles, %.1f KB/s)%n", quarter * 25,
+                processed, this.totalTiles, kbPerSecond);
+        }
+    }
+
+    /**
+     * Reads the zoom levels recorded as complete by a previous seed
+     * @return Set&lt;Integer&gt; containing completed zoom levels
+     */
+    private Set<Integer> readCheckpoint() {
+
+        Set<Integer> completedZooms = new HashSet<>();
+        if (!Files.exists(CHECKPOINT_PATH)) {
+            return completedZooms;
+        }
+        try {
+            for (String line : Files.readAllLines(CHECKPOINT_PATH, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    completedZooms.add(Integer.parseInt(line.trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Seed checkpoint could not be read, checking every tile: " + e);
+            completedZooms.clear();
+        }
+        return completedZooms;
+    }
+
+    /**
+     * Records a zoom level as complete
+     * @param zoom int containing the completed zoom level
+     */
+    private void writeCheckpoint(int zoom) {
+
+        try {
+            Files.writeString(CHECKPOINT_PATH, zoom + System.lineSeparator(),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ioe) {
+            System.out.println("Seed checkpoint could not be written: " + ioe);
+        }
+    }
+}
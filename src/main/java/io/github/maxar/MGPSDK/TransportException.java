@@ -0,0 +1,20 @@
+package io.github.maxar.MGPSDK;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request fails without a response: connection failures, timeouts, interrupted
+ * calls, or an endpoint whose circuit breaker is open. Requests are already retried before this is
+ * thrown, the cause holds the last failure
+ */
+public class TransportException extends MaxarException {
+
+    /**
+     * Constructor for <code>TransportException</code>
+     * @param message String containing the detail message
+     * @param cause IOException the request failed with
+     */
+    public TransportException(String message, IOException cause) {
+        super(message, cause);
+    }
+}
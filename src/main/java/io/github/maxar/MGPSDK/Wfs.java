@@ -1,6 +1,11 @@
 package io.github.maxar.MGPSDK;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
 
@@ -11,6 +16,11 @@ import org.apache.commons.lang3.StringUtils;
  */
 class Wfs {
 
+    //Feature IDs looked up per request, well under the server's default page size
+    static final int MAX_IDS_PER_FILTER = 100;
+    //Characters of a feature ID filter, keeps the encoded request URL under common 8KB limits
+    static final int MAX_FILTER_LENGTH = 4000;
+
     private final Auth AUTH;
     private final String BASE_URL;
     private final String VERSION;
@@ -58,10 +68,78 @@ class Wfs {
      */
     Response search() {
 
+        this.buildSearchQuery(null);
+        return OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING);
+    }
+
+    /**
+     * Asynchronous version of {@link #search()}. Builder parameters are validated on the calling
+     * thread, the request is sent through the OkHttp dispatcher
+     * @return <code>CompletableFuture</code> completed with the response from API
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    CompletableFuture<Response> searchAsync() throws IllegalArgumentException {
+
+        this.buildSearchQuery(null);
+        return OgcUtils.handleRequestAsync(this.AUTH, this.BASE_URL, this.QUERYSTRING);
+    }
+
+    /**
+     * Asynchronous search for the features matching a CQL filter, used instead of the builder's
+     * filter and feature ID. The builder's bbox, projection and type name still apply
+     * @param cqlFilter String containing the filter. Example: "featureId='abc'"
+     * @return <code>CompletableFuture</code> completed with the response from API
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    CompletableFuture<Response> searchAsync(String cqlFilter) throws IllegalArgumentException {
+
+        this.buildSearchQuery(cqlFilter);
+        return OgcUtils.handleRequestAsync(this.AUTH, this.BASE_URL, this.QUERYSTRING);
+    }
+
+    /**
+     * Packs feature IDs into <code>featureId IN (...)</code> filters for
+     * {@link #searchAsync(String)}, splitting them so no filter holds more than
+     * {@value #MAX_IDS_PER_FILTER} IDs or {@value #MAX_FILTER_LENGTH} characters. Duplicate IDs
+     * are looked up once
+     * @param featureIds Collection&lt;String&gt; containing the IDs to look up
+     * @return List&lt;String&gt; containing one filter per request
+     */
+    static List<String> featureIdFilters(Collection<String> featureIds) {
+
+        List<String> filters = new ArrayList<>();
+        StringBuilder filter = new StringBuilder();
+        int ids = 0;
+        for (String featureId : new LinkedHashSet<>(featureIds)) {
+            //Quotes are escaped by doubling them in CQL
+            String literal = "'" + featureId.replace("'", "''") + "'";
+            if (ids > 0 && (ids == MAX_IDS_PER_FILTER
+                || filter.length() + literal.length() + 2 > MAX_FILTER_LENGTH)) {
+                filters.add(filter.append(')').toString());
+                filter.setLength(0);
+                ids = 0;
+            }
+            filter.append(ids == 0 ? "featureId IN (" : ",").append(literal);
+            ids++;
+        }
+        if (ids > 0) {
+            filters.add(filter.append(')').toString());
+        }
+        return filters;
+    }
+
+    /**
+     * Adds the search parameters set on the builder to the querystring
+     * @param cqlFilter String containing a filter replacing the builder's filter and feature ID,
+     * or null to use the builder's
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private void buildSearchQuery(String cqlFilter) throws IllegalArgumentException {
+
         Ogc ogc = this.OGC;
         String bbox = ogc.getBbox();
-        String filter = ogc.getFilter();
-        String featureID = ogc.getFEATURE_ID();
+        String filter = cqlFilter != null ? cqlFilter : ogc.getFilter();
+        String featureID = cqlFilter != null ? null : ogc.getFEATURE_ID();
 
         if (featureID != null) {
             filter = String.format("featureId='%s'", featureID);
@@ -99,9 +177,6 @@ class Wfs {
         } else if (ogc.isCsv()) {
             this.QUERYSTRING.put("outputFormat", "csv");
         }
-
-        return OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING);
-
     }
 
     /**
@@ -1,13 +1,12 @@
 package io.github.maxar.MGPSDK;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import okhttp3.Response;
 
 /**
@@ -65,8 +64,46 @@ class Wms {
      *     <li>{@link Ogc.Builder#typeName(String)}</li>
      * </ul>
      * @return String containing the response body (blob)
+     * @throws MaxarException if the request fails or the image can not be written
      */
     String returnImage() {
+        return this.imageResult(this.returnImageResponse());
+    }
+
+    /**
+     * Performs a WMS GetMap request using the parameters set by the {@link Ogc.Builder} class and
+     * returns the response as is, for callers that keep the image in memory
+     * @return Response containing the encoded image, to be closed by the caller
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     * @throws MaxarException if the request fails
+     */
+    Response returnImageResponse() throws IllegalArgumentException {
+
+        this.buildImageQuery();
+        return OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING,
+            this.OGC.getHEDGE_PERCENTILE());
+    }
+
+    /**
+     * Asynchronous version of {@link #returnImage()}. Builder parameters are validated on the
+     * calling thread, the request is sent through the OkHttp dispatcher
+     * @return <code>CompletableFuture</code> completed with the response body (blob) or the status
+     * of the download / display
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    CompletableFuture<String> returnImageAsync() throws IllegalArgumentException {
+
+        this.buildImageQuery();
+        return OgcUtils.handleRequestAsync(this.AUTH, this.BASE_URL, this.QUERYSTRING,
+                this.OGC.getHEDGE_PERCENTILE())
+            .thenApply(this::imageResult);
+    }
+
+    /**
+     * Adds the GetMap parameters set on the builder to the querystring
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    private void buildImageQuery() throws IllegalArgumentException {
 
         String bbox = OGC.getBbox();
         String filter = OGC.getFilter();
@@ -75,9 +112,8 @@ class Wms {
 
         if (bbox != null) {
             OgcUtils.validateBbox(OGC);
-            if (this.OGC.getSrsname() == null) {
-                throw new IllegalArgumentException("Must provide the projection with .srsname()");
-            } else {
+            //Defaults to EPSG:4326 like every other call
+            if (this.OGC.getSrsname() != null) {
                 this.srsname = this.OGC.getSrsname();
             }
             this.QUERYSTRING.put("srsname", srsname);
@@ -100,24 +136,54 @@ class Wms {
         if (((Number) OGC.getWIDTH()).doubleValue() != 0) {
             this.QUERYSTRING.put("width", String.valueOf(OGC.getWIDTH()));
         }
-        Response response = OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING);
+    }
+
+    /**
+     * Builds the GetMap URL of every chunk of an image too large for a single request, see
+     * {@link ChunkedImage}. The other GetMap parameters are taken from the {@link Ogc.Builder}
+     * @param chunkBboxes Map&lt;String, String&gt; containing the c{col}_r{row} key and the bbox of
+     * each chunk, x first and followed by the projection
+     * @param width int containing the width of every chunk in pixels
+     * @param height int containing the height of every chunk in pixels
+     * @return HashMap&lt;String, String&gt; containing the c{col}_r{row} key and URL of each chunk
+     * @throws IllegalArgumentException if builder parameters are not set correctly
+     */
+    HashMap<String, String> chunkUrls(Map<String, String> chunkBboxes, int width, int height)
+        throws IllegalArgumentException {
+
+        this.buildImageQuery();
+        this.QUERYSTRING.put("width", String.valueOf(width));
+        this.QUERYSTRING.put("height", String.valueOf(height));
+        HashMap<String, String> urls = new HashMap<>();
+        for (Map.Entry<String, String> chunk : chunkBboxes.entrySet()) {
+            this.QUERYSTRING.put("bbox", chunk.getValue());
+            urls.put(chunk.getKey(), OgcUtils.buildUrl(this.BASE_URL, this.QUERYSTRING).toString());
+        }
+        return urls;
+    }
+
+    /**
+     * Downloads or displays a GetMap response, or returns its body
+     * @param response Response returned by the GetMap call
+     * @return String containing the response body (blob) or the status of the download / display
+     */
+    private String imageResult(Response response) {
+
         if (OGC.isDownload() || OGC.isDISPLAY()) {
             return OgcUtils.handleImageReturn(OGC, response);
         } else {
-            String result = null;
-            try {
+            try (response) {
                 assert response.body() != null;
-                result = response.body().string();
+                return response.body().string();
             } catch (IOException ioe) {
-                System.out.println("okHttp3 exception: " + ioe + " please try again");
-                System.exit(-1);
+                throw new TransportException("Image could not be read from the response", ioe);
             }
-            return result;
         }
     }
 
     /**
-     * Runs WMS requests from a collection of bboxes provided in a csv file
+     * Runs WMS requests from a collection of bboxes provided in a csv file with
+     * {@link CsvImageBatch}, writing each image next to the csv
      */
     void rerunFailedImages() {
 
@@ -146,35 +212,16 @@ class Wms {
                 filename = filename + ".csv";
             }
         }
-        ArrayList<String> failedRequests = new ArrayList<>();
         String homeDirectory = OGC.getDownloadPath() != null ? OGC.getDownloadPath() :
             System.getProperty("user.home");
-        String csvFile = homeDirectory + "/" + filename;
-        String line = "";
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            while ((line = reader.readLine()) != null) {
-                this.QUERYSTRING.put("bbox", line);
-                Response response = OgcUtils.handleRequest(AUTH, this.BASE_URL, this.QUERYSTRING);
-                if (response.code() != 200) {
-                    System.out.println("Request failed, appended to failedRequests.csv");
-                    failedRequests.add(line);
-                }
-            }
-        } catch (FileNotFoundException fnf) {
-            throw new IllegalArgumentException("csv file not found in directory specified: " + fnf);
-        } catch (IOException ioe) {
-            System.out.println("BufferedReader exception: " + ioe + " please try again");
-            System.exit(-1);
+        Path csvFile;
+        try {
+            csvFile = Paths.get(homeDirectory, filename);
+        } catch (InvalidPathException ipe) {
+            throw new IllegalArgumentException(String.format("Path %s not valid.", homeDirectory));
         }
-       if (failedRequests.size() > 0) {
-           try (PrintWriter pw = new PrintWriter(new FileWriter("failedRequests.csv"))) {
-               for (String failedRequest : failedRequests) {
-                   pw.println(failedRequest);
-               }
-           } catch (IOException ioe) {
-               System.out.println("FileWriter exception, failedRequests.csv could not be created: " + ioe);
-           }
-       }
+        this.QUERYSTRING.remove("bbox");
+        new CsvImageBatch(OGC, OgcUtils.buildUrl(this.BASE_URL, this.QUERYSTRING), csvFile).run();
     }
 
     /**
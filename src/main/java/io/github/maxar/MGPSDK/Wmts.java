@@ -1,17 +1,10 @@
 package io.github.maxar.MGPSDK;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import okhttp3.HttpUrl;
 import okhttp3.Response;
-import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
-import org.locationtech.jts.geom.Coordinate;
-import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
 /**
@@ -21,6 +14,23 @@ import org.opengis.referencing.operation.TransformException;
  */
 class Wmts {
 
+    /*
+        GetCapablities call structure changed from SW2 to SW3, hardcoded TileMatrixSets
+        instead of restructuring the XML parser
+        fill tileMatrixSet 0 - 21 ->
+        first value: {0: {"MatrixWidth": 2, "MatrixHeight": 1}}
+        final value: {21: {"MatrixWidth": 4194304, "MatrixHeight": 2097152}}
+    */
+    private static final int[] MATRIX_WIDTHS = new int[22];
+    private static final int[] MATRIX_HEIGHTS = new int[22];
+
+    static {
+        for (int i = 0; i < MATRIX_WIDTHS.length; i++) {
+            MATRIX_WIDTHS[i] = 2 << i;
+            MATRIX_HEIGHTS[i] = 1 << i;
+        }
+    }
+
     private final Auth AUTH;
     private final String BASE_URL;
     private final String VERSION;
@@ -70,7 +80,8 @@ class Wmts {
         this.QUERYSTRING.put("tilecol", tilecol);
         this.QUERYSTRING.put("format", OGC.getParamsImageFormat());
         this.QUERYSTRING.put("request", "GetTile");
-        return OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING);
+        return OgcUtils.handleRequest(this.AUTH, this.BASE_URL, this.QUERYSTRING,
+            this.OGC.getHEDGE_PERCENTILE());
     }
 
     /**
@@ -86,53 +97,85 @@ class Wmts {
             throw new IllegalArgumentException("Must provide a zoom level");
         }
         OgcUtils.validateBbox(ogc);
-        String[] bboxList = ogc.getBbox().split(",");
-        double minX = Double.parseDouble(bboxList[1]);
-        double minY = Double.parseDouble(bboxList[0]);
-        double maxX = Double.parseDouble(bboxList[3]);
-        double maxY = Double.parseDouble(bboxList[2]);
-
-        HashMap<String, Integer> results;
-        results = this.wmtsConvert(minY, minX, ogc.getZOOM_LEVEL(), ogc.getSrsname());
-        long minTileRow = results.get("tileRow");
-        long minTileCol = results.get("tileCol");
-        results = this.wmtsConvert(maxY, maxX, ogc.getZOOM_LEVEL(), ogc.getSrsname());
-        long maxTileRow = results.get("tileRow");
-        long maxTileCol = results.get("tileCol");
-
-        if (maxTileRow < minTileRow) {
-            //swap variable assignments
-            maxTileRow = maxTileRow ^ minTileRow ^ (minTileRow = maxTileRow);
-        }
-        if (maxTileCol < minTileCol) {
-            //swap variable assignments
-            maxTileCol = maxTileCol ^ minTileCol ^ (minTileCol = maxTileCol);
+        long[] tileRange = wmtsTileRange(ogc.getBbox(), ogc.getZOOM_LEVEL(), ogc.getSrsname());
+        long minTileRow = tileRange[0];
+        long maxTileRow = tileRange[1];
+        long minTileCol = tileRange[2];
+        long maxTileCol = tileRange[3];
+
+        //Encode the querystring once, only the tile position changes per call
+        this.QUERYSTRING.put("TileMatrixSet", this.srsname);
+        this.QUERYSTRING.put("TileMatrix", this.srsname + ":" + ogc.getZOOM_LEVEL());
+        this.QUERYSTRING.remove("tileRow");
+        this.QUERYSTRING.remove("tileCol");
+        HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(this.BASE_URL)).newBuilder();
+        for (Map.Entry<String, String> set : this.QUERYSTRING.entrySet()) {
+            urlBuilder.addQueryParameter(set.getKey(), set.getValue());
         }
+        HttpUrl tileMatrixUrl = urlBuilder.build();
+        String zoomLevel = String.valueOf(ogc.getZOOM_LEVEL());
 
         HashMap<String, String> wmtsCallList = new HashMap<>();
         for (long i = minTileCol; i < maxTileCol + 1; i++) {
             for (long j = minTileRow; j < maxTileRow + 1; j++) {
-                this.QUERYSTRING.put("TileMatrixSet", this.srsname);
-                this.QUERYSTRING.put("TileMatrix", this.QUERYSTRING.get("TileMatrixSet") + ":" +
-                    ogc.getZOOM_LEVEL());
-                this.QUERYSTRING.put("tileRow", String.valueOf(i));
-                this.QUERYSTRING.put("tileCol", String.valueOf(j));
-                HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(this.BASE_URL)).newBuilder();
-                //Build params from querystring
-                for (Map.Entry<String, String> set : this.QUERYSTRING.entrySet()) {
-                    urlBuilder.addQueryParameter(set.getKey(), set.getValue());
-                }
-                String call = urlBuilder.build().toString();
-                ArrayList<String> rowCol = new ArrayList<>();
-                rowCol.add(this.QUERYSTRING.get("tileRow"));
-                rowCol.add(this.QUERYSTRING.get("tileCol"));
-                rowCol.add(String.valueOf(ogc.getZOOM_LEVEL()));
-                wmtsCallList.put(String.valueOf(rowCol), call);
+                String tileRow = String.valueOf(i);
+                String tileCol = String.valueOf(j);
+                String call = tileMatrixUrl.newBuilder()
+                    .addQueryParameter("tileRow", tileRow)
+                    .addQueryParameter("tileCol", tileCol)
+                    .build()
+                    .toString();
+                wmtsCallList.put("[" + tileRow + ", " + tileCol + ", " + zoomLevel + "]", call);
             }
         }
         return wmtsCallList;
     }
 
+    /**
+     * Calculates the range of tiles covering a bbox at a zoom level. The bbox is expected to have
+     * already been checked with {@link OgcUtils#validateBbox(Ogc)}
+     * @param bbox String containing the bbox in yx order
+     * @param zoomLevel int containing a zoom level
+     * @param crs String containing the desired projection
+     * @return long[] containing minTileRow, maxTileRow, minTileCol, maxTileCol as returned by
+     * {@link #wmtsConvert(double[], double[], int, String, int[], int[])}
+     */
+    static long[] wmtsTileRange(String bbox, int zoomLevel, String crs) {
+
+        String[] bboxList = bbox.split(",");
+        double[] latY = {Double.parseDouble(bboxList[0]), Double.parseDouble(bboxList[2])};
+        double[] longX = {Double.parseDouble(bboxList[1]), Double.parseDouble(bboxList[3])};
+        int[] tileRows = new int[2];
+        int[] tileCols = new int[2];
+        wmtsConvert(latY, longX, zoomLevel, crs, tileRows, tileCols);
+
+        return new long[] {Math.min(tileRows[0], tileRows[1]), Math.max(tileRows[0], tileRows[1]),
+            Math.min(tileCols[0], tileCols[1]), Math.max(tileCols[0], tileCols[1])};
+    }
+
+    /**
+     * Builds the GetTile URL shared by every tile of a zoom level. Callers only need to append
+     * tileRow and tileCol, so the querystring is encoded once per zoom level instead of once per
+     * tile
+     * @param zoomLevel int containing a zoom level
+     * @return <code>HttpUrl</code> containing every GetTile parameter except the tile position
+     */
+    HttpUrl wmtsTileMatrixUrl(int zoomLevel) {
+
+        HashMap<String, String> querystring = new HashMap<>(this.QUERYSTRING);
+        querystring.put("TileMatrixSet", this.srsname);
+        querystring.put("TileMatrix", this.srsname + ":" + zoomLevel);
+        querystring.put("format", OGC.getParamsImageFormat());
+        querystring.put("request", "GetTile");
+        querystring.remove("tileRow");
+        querystring.remove("tileCol");
+        HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(this.BASE_URL)).newBuilder();
+        for (Map.Entry<String, String> set : querystring.entrySet()) {
+            urlBuilder.addQueryParameter(set.getKey(), set.getValue());
+        }
+        return urlBuilder.build();
+    }
+
     /**
      * Converts a lat long position to the tile column and row needed to return WMTS
      * imagery over the area
@@ -140,71 +183,67 @@ class Wmts {
      * @param longX double containing a longitude
      * @param zoomLevel int containing a zoom level
      * @param crs String containing the desired projection
-     * @return HashMap&lt;String, Integer&gt; containing converted tile row and column values
+     * @return int[] containing the converted tile row and column values
      */
-    public HashMap<String, Integer> wmtsConvert(double latY, double longX, int zoomLevel, String crs) {
+    static int[] wmtsConvert(double latY, double longX, int zoomLevel, String crs) {
 
-        if (crs.equals("EPSG:4326")) {
-            /*
-                GetCapablities call structure changed from SW2 to SW3, hardcoded TileMatrixSets
-                instead of restructuring the XML parser
-                fill tileMatrixSet 0 - 21 ->
-                first value: {0: {"MatrixWidth": 2, "MatrixHeight": 1}}
-                final value: {21: {"MatrixWidth": 4194304, "MatrixHeight": 2097152}}
-            */
-            HashMap<Integer, HashMap<String, Integer>> tileMatrixSet = new HashMap<>();
-            int value1 = 1;
-            for (int i = 0; i <= 21; i++) {
-                int finalValue1 = value1;
-                tileMatrixSet.put(i, new HashMap<String, Integer>() {{
-                    put("MatrixWidth", finalValue1 * 2);
-                    put("MatrixHeight", finalValue1);
-                }});
-                value1 = value1 * 2;
-            }
+        int[] tileRows = new int[1];
+        int[] tileCols = new int[1];
+        wmtsConvert(new double[] {latY}, new double[] {longX}, zoomLevel, crs, tileRows, tileCols);
+        return new int[] {tileRows[0], tileCols[0]};
+    }
 
-            Integer matrixWidth;
-            Integer matrixHeight;
-            try {
-                matrixWidth = tileMatrixSet.get(zoomLevel).get("MatrixWidth");
-                matrixHeight = tileMatrixSet.get(zoomLevel).get("MatrixHeight");
-            } catch (NullPointerException npe) {
+    /**
+     * Converts arrays of lat long positions to the tile columns and rows needed to return WMTS
+     * imagery over the area. EPSG:4326 positions are converted with the precomputed
+     * TileMatrixSet dimensions, any other projection is transformed to EPSG:4326 in a single batch
+     * using a cached <code>MathTransform</code>
+     * @param latY double[] containing latitudes, or y values in <code>crs</code>
+     * @param longX double[] containing longitudes, or x values in <code>crs</code>
+     * @param zoomLevel int containing a zoom level
+     * @param crs String containing the desired projection
+     * @param tileRows int[] receiving the converted tile row values
+     * @param tileCols int[] receiving the converted tile column values
+     * @throws IllegalArgumentException if the zoom level is not in the EPSG:4326 TileMatrixSet
+     */
+    static void wmtsConvert(double[] latY, double[] longX, int zoomLevel, String crs,
+        int[] tileRows, int[] tileCols) throws IllegalArgumentException {
+
+        int count = latY.length;
+        if (crs.equals("EPSG:4326")) {
+            if (zoomLevel < 0 || zoomLevel >= MATRIX_WIDTHS.length) {
                 throw new IllegalArgumentException("Unable to determine Matrix dimensions from "
                     + "input coordinates. Zoom levels for EPSG:4326 should be between - 21");
             }
-            HashMap<String, Integer> results = new HashMap<>();
-            results.put("tileRow" , (int) Math.round((longX + 180) * (matrixWidth / 360.0)));
-            results.put("tileCol" , (int) Math.round((90 - latY) * (matrixHeight / 180.0)));
-            return results;
+            double widthScale = MATRIX_WIDTHS[zoomLevel] / 360.0;
+            double heightScale = MATRIX_HEIGHTS[zoomLevel] / 180.0;
+            for (int i = 0; i < count; i++) {
+                tileRows[i] = (int) Math.round((longX[i] + 180) * widthScale);
+                tileCols[i] = (int) Math.round((90 - latY[i]) * heightScale);
+            }
         }
         else {
-            CoordinateReferenceSystem sourceCRS;
-            CoordinateReferenceSystem targetCRS;
-            double transformedLat;
-            double transformedLon;
-            MathTransform transform;
+            //Interleaved xy pairs so every position is transformed with one call
+            double[] coordinates = new double[count * 2];
+            for (int i = 0; i < count; i++) {
+                coordinates[i * 2] = longX[i];
+                coordinates[i * 2 + 1] = latY[i];
+            }
             try {
-                sourceCRS = CRS.decode(OGC.getSrsname());
-                targetCRS = CRS.decode("EPSG:4326");
-                Coordinate originalCoord = new Coordinate(longX, latY);
-
-                transform = CRS.findMathTransform(sourceCRS, targetCRS);
-                Coordinate transformedCoord = JTS.transform(originalCoord, null, transform);
-                transformedLat = transformedCoord.y;
-                transformedLon = transformedCoord.x;
-            } catch (FactoryException | TransformException e) {
+                OgcUtils.findTransform(crs, "EPSG:4326").transform(coordinates, 0, coordinates, 0,
+                    count);
+            } catch (TransformException e) {
                 throw new RuntimeException(e);
             }
-            double latRads = Math.toRadians(transformedLat);
-            double n = Math.pow(2, OGC.getZOOM_LEVEL());
-            int xTile = (int) ((transformedLon + 180.0 ) / 360.0 * n);
-            double x = Math.tan(latRads);
-            int yTile = (int) ((1.0 - (Math.log(x + Math.sqrt(Math.pow(x, 2) + 1))) / Math.PI) /
-                2.0 * n);
-            HashMap<String, Integer> results = new HashMap<>();
-            results.put("tileRow" , xTile);
-            results.put("tileCol" , yTile);
-            return results;
+            double n = 1L << zoomLevel;
+            for (int i = 0; i < count; i++) {
+                double transformedLon = coordinates[i * 2];
+                double latRads = Math.toRadians(coordinates[i * 2 + 1]);
+                double x = Math.tan(latRads);
+                tileRows[i] = (int) ((transformedLon + 180.0) / 360.0 * n);
+                tileCols[i] = (int) ((1.0 - (Math.log(x + Math.sqrt(x * x + 1))) / Math.PI) /
+                    2.0 * n);
+            }
         }
     }
 
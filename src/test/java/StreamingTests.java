@@ -342,6 +342,35 @@ class StreamingTests {
         assertTrue(results.size() > 0);
     }
 
+    @Test
+    @DisplayName("WMTS seed tiles zoom levels 10 - 12")
+    void testSeedTiles() {
+        Streaming seedTest = Streaming.builder()
+            .bbox(BBOX)
+            .srsname("EPSG:4326")
+            .imageFormat("png")
+            .threadNumber(10)
+            .downloadPath(System.getProperty("user.home") + "/Downloads/TestTileCache")
+            .build();
+
+        seedTest.seedTiles(10, 12);
+        File file = new File(System.getProperty("user.home") + "/Downloads/TestTileCache/12");
+        assertTrue(file.exists());
+    }
+
+    @Test
+    @DisplayName("WMTS seed tiles improper zoom range")
+    void testSeedTilesBadZoomRange() {
+        Streaming seedTest = Streaming.builder()
+            .bbox(BBOX)
+            .srsname("EPSG:4326")
+            .imageFormat("png")
+            .threadNumber(10)
+            .build();
+
+        assertThrows(IllegalArgumentException.class, () -> seedTest.seedTiles(12, 10));
+    }
+
     @Test
     @DisplayName("Full res download jpeg")
     void testFullResDownload() {
@@ -0,0 +1,157 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BodyWriterTests {
+
+    private final Path downloadPath;
+    private final Path target;
+    private final Path partPath;
+    //Size of the .part file when the body was first read
+    private long sizeBeforeRead = -1;
+
+    BodyWriterTests() throws IOException {
+        this.downloadPath = Files.createTempDirectory("body");
+        this.target = this.downloadPath.resolve("tile.png");
+        this.partPath = this.downloadPath.resolve("tile.png.part");
+    }
+
+    @AfterEach
+    void removeDownloadPath() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.downloadPath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    //Body sending the content while declaring a Content-Length, or -1 for none
+    private ResponseBody body(byte[] content, long contentLength) {
+        BufferedSource source = Okio.buffer(new ForwardingSource(new Buffer().write(content)) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                if (sizeBeforeRead < 0) {
+                    sizeBeforeRead = Files.size(partPath);
+                }
+                return super.read(sink, byteCount);
+            }
+        });
+        return new ResponseBody() {
+            @Override
+            public MediaType contentType() {
+                return null;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public BufferedSource source() {
+                return source;
+            }
+        };
+    }
+
+    private long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    @Test
+    @DisplayName("Body is written through a preallocated .part file and renamed")
+    void TestWritesBody() throws IOException {
+        byte[] content = content(300_000);
+        CRC32 crc = new CRC32();
+        assertEquals(content.length,
+            BodyWriter.write(body(content, content.length), this.target, crc));
+        assertEquals(content.length, this.sizeBeforeRead);
+        assertArrayEquals(content, Files.readAllBytes(this.target));
+        assertEquals(crc(content), crc.getValue());
+        assertFalse(Files.exists(this.partPath));
+    }
+
+    @Test
+    @DisplayName("Body without a Content-Length replaces a longer file")
+    void TestUnknownLength() throws IOException {
+        Files.write(this.target, content(500_000));
+        byte[] content = content(3000);
+        assertEquals(content.length, BodyWriter.write(body(content, -1), this.target, null));
+        assertEquals(0, this.sizeBeforeRead);
+        assertArrayEquals(content, Files.readAllBytes(this.target));
+        assertFalse(Files.exists(this.partPath));
+    }
+
+    @Test
+    @DisplayName("Body shorter than its Content-Length leaves no file behind")
+    void TestShortBody() {
+        IOException ioe = assertThrows(IOException.class,
+            () -> BodyWriter.write(body(content(3000), 5000), this.target, new CRC32()));
+        assertEquals("Expected 5000 bytes for tile.png, received 3000", ioe.getMessage());
+        assertFalse(Files.exists(this.target));
+        assertFalse(Files.exists(this.partPath));
+    }
+
+    @Test
+    @DisplayName("Body longer than its Content-Length leaves no file behind")
+    void TestLongBody() {
+        IOException ioe = assertThrows(IOException.class,
+            () -> BodyWriter.write(body(content(3000), 1000), this.target, null));
+        assertEquals("Expected 1000 bytes for tile.png, received over 1000", ioe.getMessage());
+        assertFalse(Files.exists(this.target));
+        assertFalse(Files.exists(this.partPath));
+    }
+
+    @Test
+    @DisplayName("Short body leaves the file of a previous download untouched")
+    void TestShortBodyKeepsPrevious() throws IOException {
+        byte[] previous = content(2000);
+        Files.write(this.target, previous);
+        assertThrows(IOException.class,
+            () -> BodyWriter.write(body(content(3000), 5000), this.target, null));
+        assertArrayEquals(previous, Files.readAllBytes(this.target));
+        assertFalse(Files.exists(this.partPath));
+    }
+
+    @Test
+    @DisplayName("Chip is written between its position and limit and left unchanged")
+    void TestWritesChip() throws IOException {
+        byte[] content = content(4000);
+        ByteBuffer chip = ByteBuffer.wrap(content, 1000, 2000);
+        CRC32 crc = new CRC32();
+        assertEquals(2000, BodyWriter.write(chip, this.target, crc));
+        assertEquals(1000, chip.position());
+        assertEquals(3000, chip.limit());
+
+        byte[] written = new byte[2000];
+        System.arraycopy(content, 1000, written, 0, 2000);
+        assertArrayEquals(written, Files.readAllBytes(this.target));
+        assertEquals(crc(written), crc.getValue());
+        assertFalse(Files.exists(this.partPath));
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ChipVerifierTests {
+
+    private static final byte[] PNG_CHIP = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n',
+        0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+    private static final byte[] JPEG_CHIP = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0,
+        0, 0x10, 'J', 'F', 'I', 'F', (byte) 0xFF, (byte) 0xD9};
+
+    //Response with the given header names and values, in pairs
+    private Response response(String... headers) {
+        Response.Builder builder = new Response.Builder()
+            .request(new Request.Builder().url("https://api.maxar.com/streaming/v1/ogc/wms").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK");
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.addHeader(headers[i], headers[i + 1]);
+        }
+        return builder.build();
+    }
+
+    private String md5(byte[] chip) throws Exception {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(chip));
+    }
+
+    private String crc32c(byte[] chip) {
+        CRC32C crc = new CRC32C();
+        crc.update(chip);
+        return Base64.getEncoder().encodeToString(
+            ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    @Test
+    @DisplayName("Complete chip with matching headers passes")
+    void TestVerifyCompleteChip() throws Exception {
+        Response response = response("Content-Length", String.valueOf(JPEG_CHIP.length),
+            "Content-MD5", md5(JPEG_CHIP),
+            "x-goog-hash", "crc32c=" + crc32c(JPEG_CHIP),
+            "x-goog-hash", "md5=" + md5(JPEG_CHIP));
+        assertDoesNotThrow(() -> ChipVerifier.verify(response, ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+    }
+
+    @Test
+    @DisplayName("Chip shorter than its Content-Length fails")
+    void TestContentLengthMismatch() {
+        Response response = response("Content-Length", String.valueOf(JPEG_CHIP.length + 1));
+        assertThrows(IOException.class,
+            () -> ChipVerifier.verify(response, ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+    }
+
+    @Test
+    @DisplayName("Chip not matching its Content-MD5 fails")
+    void TestContentMd5Mismatch() throws Exception {
+        Response response = response("Content-MD5", md5(PNG_CHIP));
+        assertThrows(IOException.class,
+            () -> ChipVerifier.verify(response, ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+    }
+
+    @Test
+    @DisplayName("Chip not matching the md5 or crc32c of x-goog-hash fails")
+    void TestGoogHashMismatch() throws Exception {
+        Response md5Response = response("x-goog-hash", "md5=" + md5(PNG_CHIP));
+        assertThrows(IOException.class,
+            () -> ChipVerifier.verify(md5Response, ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+        //Both digests in one header, only the crc32c is wrong
+        Response crcResponse = response("x-goog-hash",
+            "crc32c=" + crc32c(PNG_CHIP) + ", md5=" + md5(JPEG_CHIP));
+        assertThrows(IOException.class,
+            () -> ChipVerifier.verify(crcResponse, ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+    }
+
+    @Test
+    @DisplayName("PNG without IEND and its CRC fails")
+    void TestTruncatedPng() {
+        assertTrue(ChipVerifier.isImage(ByteBuffer.wrap(PNG_CHIP), "png"));
+        assertFalse(ChipVerifier.isImage(
+            ByteBuffer.wrap(Arrays.copyOf(PNG_CHIP, PNG_CHIP.length - 4)), "png"));
+        assertFalse(ChipVerifier.isImage(
+            ByteBuffer.wrap(Arrays.copyOf(PNG_CHIP, PNG_CHIP.length - 8)), "png"));
+    }
+
+    @Test
+    @DisplayName("JPEG without FFD9 fails")
+    void TestTruncatedJpeg() {
+        assertTrue(ChipVerifier.isImage(ByteBuffer.wrap(JPEG_CHIP), "jpeg"));
+        assertFalse(ChipVerifier.isImage(
+            ByteBuffer.wrap(Arrays.copyOf(JPEG_CHIP, JPEG_CHIP.length - 1)), "jpeg"));
+        assertFalse(ChipVerifier.isImage(
+            ByteBuffer.wrap(Arrays.copyOf(JPEG_CHIP, JPEG_CHIP.length - 2)), "jpeg"));
+    }
+
+    @Test
+    @DisplayName("XML error document returned with a 200 fails")
+    void TestXmlErrorBody() {
+        byte[] error = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ServiceExceptionReport>"
+            + "<ServiceException>Layer not found</ServiceException></ServiceExceptionReport>")
+            .getBytes(StandardCharsets.UTF_8);
+        Response response = response("Content-Length", String.valueOf(error.length));
+        for (String format : new String[] {"jpeg", "png", "geotiff"}) {
+            assertFalse(ChipVerifier.isImage(ByteBuffer.wrap(error), format), format);
+            assertThrows(IOException.class,
+                () -> ChipVerifier.verify(response, ByteBuffer.wrap(error), format), format);
+        }
+    }
+
+    @Test
+    @DisplayName("TIFF and BigTIFF are accepted in both byte orders")
+    void TestTiffSignatures() {
+        byte[][] signatures = {{'I', 'I', 42, 0}, {'M', 'M', 0, 42}, {'I', 'I', 43, 0},
+            {'M', 'M', 0, 43}};
+        for (byte[] signature : signatures) {
+            byte[] chip = Arrays.copyOf(signature, 16);
+            assertTrue(ChipVerifier.isImage(ByteBuffer.wrap(chip), "geotiff"));
+        }
+        //Byte order mark not matching the magic number
+        assertFalse(ChipVerifier.isImage(ByteBuffer.wrap(new byte[] {'I', 'I', 0, 42}), "geotiff"));
+        assertFalse(ChipVerifier.isImage(ByteBuffer.wrap(new byte[] {'M', 'M', 43, 0}), "geotiff"));
+    }
+
+    @Test
+    @DisplayName("Checks run between the position and limit of the buffer")
+    void TestBufferWindow() {
+        byte[] padded = new byte[JPEG_CHIP.length + 8];
+        System.arraycopy(JPEG_CHIP, 0, padded, 4, JPEG_CHIP.length);
+        ByteBuffer chip = ByteBuffer.wrap(padded, 4, JPEG_CHIP.length);
+        assertTrue(ChipVerifier.isImage(chip, "jpeg"));
+        assertEquals(4, chip.position());
+        assertTrue(ChipVerifier.isImage(chip, null));
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTests {
+
+    //Time of the breaker, moved forward by the tests
+    private long now = 1_000_000;
+    private final CircuitBreaker breaker = new CircuitBreaker("streaming", () -> this.now);
+
+    private void record(int successes, int failures) throws CircuitOpenException {
+        for (int i = 0; i < successes; i++) {
+            this.breaker.onResult(this.breaker.acquirePermission(), false);
+        }
+        for (int i = 0; i < failures; i++) {
+            this.breaker.onResult(this.breaker.acquirePermission(), true);
+        }
+    }
+
+    private long retryAfter() {
+        return assertThrows(CircuitOpenException.class, this.breaker::acquirePermission)
+            .getRETRY_AFTER_MILLIS();
+    }
+
+    @Test
+    @DisplayName("Circuit stays closed until 10 calls have been recorded")
+    void TestMinimumCalls() throws CircuitOpenException {
+        record(0, 9);
+        assertEquals(CircuitBreaker.CLOSED, this.breaker.getState());
+        record(0, 1);
+        assertEquals(CircuitBreaker.OPEN, this.breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Circuit opens once half of 10 calls failed")
+    void TestOpensAtFailureRatio() throws CircuitOpenException {
+        record(5, 4);
+        assertEquals(CircuitBreaker.CLOSED, this.breaker.getState());
+        record(0, 1);
+        assertEquals(CircuitBreaker.OPEN, this.breaker.getState());
+
+        CircuitBreaker healthier = new CircuitBreaker("basemaps", () -> this.now);
+        for (int i = 0; i < 10; i++) {
+            healthier.onResult(false, i < 4);
+        }
+        assertEquals(CircuitBreaker.CLOSED, healthier.getState());
+    }
+
+    @Test
+    @DisplayName("Only 408 and 5xx responses count as failures")
+    void TestFailureCodes() {
+        assertTrue(CircuitBreaker.isFailure(408));
+        assertTrue(CircuitBreaker.isFailure(500));
+        assertTrue(CircuitBreaker.isFailure(503));
+        assertFalse(CircuitBreaker.isFailure(200));
+        assertFalse(CircuitBreaker.isFailure(404));
+        assertFalse(CircuitBreaker.isFailure(429));
+    }
+
+    @Test
+    @DisplayName("Open circuit fails fast for 30 seconds")
+    void TestOpenFailsFast() throws CircuitOpenException {
+        record(0, 10);
+        assertEquals(30_000, retryAfter());
+        this.now += 20_000;
+        assertEquals(10_000, retryAfter());
+        assertEquals(CircuitBreaker.OPEN, this.breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Half open circuit lets 3 trial calls through and closes if they succeed")
+    void TestHalfOpenTrials() throws CircuitOpenException {
+        record(0, 10);
+        this.now += 30_000;
+        for (int i = 0; i < CircuitBreaker.TRIAL_CALLS; i++) {
+            assertTrue(this.breaker.acquirePermission());
+        }
+        assertEquals(CircuitBreaker.HALF_OPEN, this.breaker.getState());
+        //Every trial is in flight
+        assertEquals(0, retryAfter());
+
+        this.breaker.onResult(true, false);
+        this.breaker.onResult(true, false);
+        assertEquals(CircuitBreaker.HALF_OPEN, this.breaker.getState());
+        this.breaker.onResult(true, false);
+        assertEquals(CircuitBreaker.CLOSED, this.breaker.getState());
+        assertFalse(this.breaker.acquirePermission());
+
+        //The window starts over once closed
+        record(0, 9);
+        assertEquals(CircuitBreaker.CLOSED, this.breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Abandoned trial calls free their slot without deciding the state")
+    void TestAbandonedTrial() throws CircuitOpenException {
+        record(0, 10);
+        this.now += 30_000;
+        for (int i = 0; i < CircuitBreaker.TRIAL_CALLS; i++) {
+            this.breaker.acquirePermission();
+        }
+        this.breaker.onResult(true, null);
+        assertEquals(CircuitBreaker.HALF_OPEN, this.breaker.getState());
+        assertTrue(this.breaker.acquirePermission());
+    }
+
+    @Test
+    @DisplayName("Failed trial reopens the circuit for twice as long, up to 300 seconds")
+    void TestOpenTimeDoubles() throws CircuitOpenException {
+        record(0, 10);
+        long[] openMillis = {60_000, 120_000, 240_000, 300_000, 300_000};
+        long previous = 30_000;
+        for (long expected : openMillis) {
+            this.now += previous;
+            assertTrue(this.breaker.acquirePermission());
+            this.breaker.onResult(true, true);
+            assertEquals(CircuitBreaker.OPEN, this.breaker.getState());
+            assertEquals(expected, retryAfter());
+            previous = expected;
+        }
+
+        //Closing resets the open time
+        this.now += previous;
+        record(CircuitBreaker.TRIAL_CALLS, 0);
+        assertEquals(CircuitBreaker.CLOSED, this.breaker.getState());
+        record(0, 10);
+        assertEquals(30_000, retryAfter());
+    }
+}
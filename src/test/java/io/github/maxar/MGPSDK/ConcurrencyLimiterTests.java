@@ -0,0 +1,132 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTests {
+
+    //Time of the limiter, moved forward by the tests
+    private long now = 1_000_000;
+
+    private ConcurrencyLimiter limiter(int initialLimit, int maxLimit) {
+        return new ConcurrencyLimiter(initialLimit, maxLimit, () -> this.now);
+    }
+
+    //Thread blocked in acquire until a permit frees up
+    private Thread waiter(ConcurrencyLimiter limiter) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join(200);
+        assertTrue(thread.isAlive(), "acquire should wait for a permit");
+        return thread;
+    }
+
+    @Test
+    @DisplayName("Limit grows by one per window only while at least half of it is in use")
+    void TestGrowthOnlyWhileUsed() {
+        ConcurrencyLimiter limiter = limiter(4, 10);
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(100, false, 1);
+        }
+        assertEquals(4, limiter.getLimit());
+        //1/limit per response, so about one request per window of 4 responses
+        for (int i = 0; i < 4; i++) {
+            limiter.onSample(100, false, 2);
+        }
+        assertEquals(4, limiter.getLimit());
+        limiter.onSample(100, false, 2);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Latency above twice the baseline backs off by 5% once per round trip")
+    void TestLatencyBackoff() {
+        ConcurrencyLimiter limiter = limiter(20, 40);
+        limiter.onSample(100, false, 0);
+        //Twice the baseline is still tolerated
+        limiter.onSample(200, false, 0);
+        assertEquals(20, limiter.getLimit());
+
+        limiter.onSample(250, false, 0);
+        assertEquals(19, limiter.getLimit());
+        //Sent before the cut
+        limiter.onSample(250, false, 0);
+        assertEquals(19, limiter.getLimit());
+
+        this.now += 1000;
+        limiter.onSample(250, false, 0);
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("A burst of drops cuts the limit by 25% only once")
+    void TestDropBackoff() {
+        ConcurrencyLimiter limiter = limiter(20, 40);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(100, true, 20);
+        }
+        assertEquals(15, limiter.getLimit());
+        limiter.onFailure(100);
+        assertEquals(15, limiter.getLimit());
+
+        //Requests sent after the cut cut it again
+        this.now += 1000;
+        limiter.onFailure(100);
+        assertEquals(11, limiter.getLimit());
+        this.now += 1000;
+        limiter.onSample(100, true, 11);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Limit stays between 1 and the maximum")
+    void TestClamps() {
+        assertEquals(1, limiter(0, 10).getLimit());
+        assertEquals(10, limiter(50, 10).getLimit());
+        assertEquals(1, limiter(5, 0).getLimit());
+
+        ConcurrencyLimiter limiter = limiter(4, 4);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100, false, 4);
+        }
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 50; i++) {
+            this.now += 1000;
+            limiter.onSample(100, true, 4);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Acquire waits for a release once the limit is in flight")
+    void TestAcquireWaitsForRelease() throws InterruptedException {
+        ConcurrencyLimiter limiter = limiter(2, 2);
+        limiter.acquire();
+        limiter.acquire();
+        Thread waiter = waiter(limiter);
+
+        limiter.release();
+        waiter.join(2000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    @DisplayName("Growing the limit wakes a waiting acquire")
+    void TestGrowthWakesWaiter() throws InterruptedException {
+        ConcurrencyLimiter limiter = limiter(1, 4);
+        limiter.acquire();
+        Thread waiter = waiter(limiter);
+
+        limiter.onSample(100, false);
+        assertEquals(2, limiter.getLimit());
+        waiter.join(2000);
+        assertFalse(waiter.isAlive());
+    }
+}
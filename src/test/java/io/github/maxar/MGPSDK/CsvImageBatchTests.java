@@ -0,0 +1,153 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CsvImageBatchTests {
+
+    private final Path directory;
+    private final Path csvPath;
+    private final Path failedPath;
+
+    CsvImageBatchTests() throws IOException {
+        this.directory = Files.createTempDirectory("csv");
+        this.csvPath = this.directory.resolve("bboxes.csv");
+        this.failedPath = this.directory.resolve("bboxes-failed.csv");
+    }
+
+    @AfterEach
+    void removeDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private CsvImageBatch batch(int threadNumber) {
+        return new CsvImageBatch(null, null, this.csvPath, "png", threadNumber);
+    }
+
+    //Appends the bboxes of lines from to to the csv
+    private void writeLines(int from, int to) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            lines.add(bbox(i));
+        }
+        Files.write(this.csvPath, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private String bbox(int line) {
+        return String.format("%s,0,%s,1", line - 1, line);
+    }
+
+    private int line(Path imagePath) {
+        return Integer.parseInt(imagePath.getFileName().toString().replace(".png", ""));
+    }
+
+    //Line recorded in the checkpoint file, none if it has not been written
+    private String checkpoint(CsvImageBatch batch) {
+        try {
+            return Files.exists(batch.getCheckpointPath())
+                ? Files.readString(batch.getCheckpointPath()) : "none";
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Test
+    @DisplayName("Lines finishing in order advance the checkpoint every 256 lines")
+    void TestInOrderCheckpoint() throws IOException {
+        writeLines(1, 600);
+        CsvImageBatch batch = batch(1);
+        Map<Integer, String> checkpoints = new ConcurrentHashMap<>();
+        assertEquals(0, batch.run((bbox, imagePath) -> {
+            int line = line(imagePath);
+            if (line == 1 || line == 257 || line == 513) {
+                checkpoints.put(line, checkpoint(batch));
+            }
+            return true;
+        }));
+        assertEquals(Map.of(1, "none", 257, "256", 513, "512"), checkpoints);
+        assertEquals("600", checkpoint(batch));
+    }
+
+    @Test
+    @DisplayName("Checkpoint does not move past a line that is still in flight")
+    void TestOutOfOrderCheckpoint() throws IOException {
+        writeLines(1, 600);
+        CsvImageBatch batch = batch(4);
+        CountDownLatch laterLines = new CountDownLatch(1);
+        Map<String, String> firstLine = new ConcurrentHashMap<>();
+        assertEquals(0, batch.run((bbox, imagePath) -> {
+            int line = line(imagePath);
+            if (line == 1) {
+                //Hundreds of later lines finish while the first one is slow
+                try {
+                    firstLine.put("released", String.valueOf(laterLines.await(10,
+                        TimeUnit.SECONDS)));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                firstLine.put("checkpoint", checkpoint(batch));
+            } else if (line == 599) {
+                laterLines.countDown();
+            }
+            return true;
+        }));
+        assertEquals(Map.of("released", "true", "checkpoint", "none"), firstLine);
+        assertEquals("600", checkpoint(batch));
+    }
+
+    @Test
+    @DisplayName("Resumed batch skips checkpointed lines and adds to the failed list")
+    void TestResumeAppendsFailed() throws IOException {
+        writeLines(1, 5);
+        List<Integer> fetched = new ArrayList<>();
+        assertEquals(1, batch(1).run((bbox, imagePath) -> {
+            fetched.add(line(imagePath));
+            return line(imagePath) != 2;
+        }));
+        assertEquals(List.of(bbox(2)), Files.readAllLines(this.failedPath));
+
+        //An empty line and a line whose image exists count as processed
+        Files.writeString(this.csvPath, System.lineSeparator(), StandardOpenOption.APPEND);
+        writeLines(7, 9);
+        Files.createFile(this.directory.resolve("bboxes").resolve("8.png"));
+        fetched.clear();
+        CsvImageBatch resumed = batch(1);
+        assertEquals(1, resumed.run((bbox, imagePath) -> {
+            fetched.add(line(imagePath));
+            return line(imagePath) != 7;
+        }));
+        assertEquals(List.of(7, 9), fetched);
+        assertEquals(List.of(bbox(2), bbox(7)), Files.readAllLines(this.failedPath));
+        assertEquals("9", checkpoint(resumed));
+    }
+
+    @Test
+    @DisplayName("Fresh batch starts a fresh failed list")
+    void TestFreshBatchTruncatesFailed() throws IOException {
+        writeLines(1, 5);
+        Files.write(this.failedPath, List.of("left over", "from a previous batch"));
+        assertEquals(2, batch(2).run((bbox, imagePath) -> line(imagePath) % 2 == 1));
+        List<String> failed = Files.readAllLines(this.failedPath);
+        failed.sort(Comparator.naturalOrder());
+        assertEquals(List.of(bbox(2), bbox(4)), failed);
+    }
+}
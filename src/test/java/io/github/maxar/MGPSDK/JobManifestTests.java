@@ -0,0 +1,141 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class JobManifestTests {
+
+    private final Path downloadPath;
+
+    JobManifestTests() throws IOException {
+        this.downloadPath = Files.createTempDirectory("manifest");
+    }
+
+    @AfterEach
+    void removeDownloadPath() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.downloadPath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private JobManifest manifest() {
+        return new JobManifest(this.downloadPath, "png", "job");
+    }
+
+    //Writes the tile file and records it as complete
+    private void complete(JobManifest manifest, String key, String content) throws IOException {
+        Path tilePath = this.downloadPath.resolve(key + ".png");
+        Files.writeString(tilePath, content);
+        manifest.complete(key, Files.size(tilePath), JobManifest.checksum(tilePath));
+    }
+
+    private Map<String, String> tiles(String... keysAndBboxes) {
+        Map<String, String> tiles = new HashMap<>();
+        for (int i = 0; i < keysAndBboxes.length; i += 2) {
+            tiles.put(keysAndBboxes[i], keysAndBboxes[i + 1]);
+        }
+        return tiles;
+    }
+
+    private Map<String, String> urls(Map<String, String> tiles) {
+        Map<String, String> urls = new HashMap<>();
+        for (String key : tiles.keySet()) {
+            urls.put(key, "https://example.com/" + key);
+        }
+        return urls;
+    }
+
+    @Test
+    @DisplayName("Completed tiles are skipped on resume, the others are downloaded")
+    void TestResumeSkipsComplete() throws IOException {
+        Map<String, String> tiles = tiles("0_0", "0,0,1,1", "0_1", "0,1,1,2", "1_0", "1,0,2,1");
+        JobManifest first = manifest();
+        assertEquals(0, first.resume(tiles, urls(tiles)));
+        complete(first, "0_0", "tile 0_0");
+        first.fail("0_1");
+
+        Map<String, String> urls = urls(tiles);
+        assertEquals(1, manifest().resume(tiles, urls));
+        assertEquals(Map.of("0_1", "https://example.com/0_1", "1_0", "https://example.com/1_0"),
+            urls);
+    }
+
+    @Test
+    @DisplayName("The last record for a tile wins")
+    void TestLastRecordWins() throws IOException {
+        Map<String, String> tiles = tiles("0_0", "0,0,1,1", "0_1", "0,1,1,2");
+        JobManifest first = manifest();
+        first.resume(tiles, urls(tiles));
+        complete(first, "0_0", "tile 0_0");
+        first.fail("0_0");
+        first.fail("0_1");
+        complete(first, "0_1", "tile 0_1");
+        //A record cut off by the interruption is ignored
+        Files.writeString(first.getPath(), "complete\t0_1\t8", StandardCharsets.UTF_8,
+            StandardOpenOption.APPEND);
+
+        Map<String, String> urls = urls(tiles);
+        assertEquals(1, manifest().resume(tiles, urls));
+        assertEquals(List.of("0_0"), List.copyOf(urls.keySet()));
+    }
+
+    @Test
+    @DisplayName("Completed tiles whose file changed size or checksum are downloaded again")
+    void TestChangedTileRejected() throws IOException {
+        Map<String, String> tiles = tiles("0_0", "0,0,1,1", "0_1", "0,1,1,2", "1_0", "1,0,2,1");
+        JobManifest first = manifest();
+        first.resume(tiles, urls(tiles));
+        complete(first, "0_0", "tile 0_0");
+        complete(first, "0_1", "tile 0_1");
+        complete(first, "1_0", "tile 1_0");
+        //Same size, different checksum
+        Files.writeString(this.downloadPath.resolve("0_0.png"), "tile 9_9");
+        Files.writeString(this.downloadPath.resolve("0_1.png"), "tile");
+        Files.delete(this.downloadPath.resolve("1_0.png"));
+
+        Map<String, String> urls = urls(tiles);
+        assertEquals(0, manifest().resume(tiles, urls));
+        assertEquals(3, urls.size());
+    }
+
+    @Test
+    @DisplayName("Resume keeps only the tiles of the current bbox and checks their bbox")
+    void TestChangedBbox() throws IOException {
+        Map<String, String> tiles = tiles("0_0", "0,0,1,1", "0_1", "0,1,1,2", "1_0", "1,0,2,1");
+        JobManifest first = manifest();
+        first.resume(tiles, urls(tiles));
+        complete(first, "0_0", "tile 0_0");
+        complete(first, "0_1", "tile 0_1");
+        complete(first, "1_0", "tile 1_0");
+
+        //1_0 is no longer part of the job and 0_1 now covers a different area
+        Map<String, String> changed = tiles("0_0", "0,0,1,1", "0_1", "0,1,1,3", "1_1", "1,1,2,2");
+        Map<String, String> urls = urls(changed);
+        assertEquals(1, manifest().resume(changed, urls));
+        assertEquals(Map.of("0_1", "https://example.com/0_1", "1_1", "https://example.com/1_1"),
+            urls);
+        try (Stream<String> lines = Files.lines(first.getPath())) {
+            assertEquals(List.of("0_0", "0_1", "1_1"),
+                lines.map(line -> line.split("\t")[1]).sorted().toList());
+        }
+
+        //The dropped tile is not remembered once the bbox changes back
+        urls = urls(tiles);
+        assertEquals(1, manifest().resume(tiles, urls));
+        assertTrue(urls.containsKey("1_0"));
+    }
+}
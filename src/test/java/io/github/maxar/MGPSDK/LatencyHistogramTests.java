@@ -0,0 +1,71 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTests {
+
+    private LatencyHistogram histogram(long latencyMillis, int samples) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        add(histogram, latencyMillis, samples);
+        return histogram;
+    }
+
+    private void add(LatencyHistogram histogram, long latencyMillis, int samples) {
+        for (int i = 0; i < samples; i++) {
+            histogram.add(latencyMillis);
+        }
+    }
+
+    @Test
+    @DisplayName("No percentile is reported before 20 samples")
+    void TestMinimumSamples() {
+        LatencyHistogram histogram = histogram(100, LatencyHistogram.MIN_SAMPLES - 1);
+        assertEquals(-1, histogram.valueAt(50));
+        histogram.add(100);
+        assertTrue(histogram.valueAt(50) > 0);
+        assertEquals(-1, LatencyHistogram.percentile("unrecorded", 50));
+    }
+
+    @Test
+    @DisplayName("Percentiles are the upper bound of their bucket, within 10% of the latency")
+    void TestBucketAccuracy() {
+        for (long latency : new long[] {1, 7, 100, 2500, 60_000}) {
+            long value = histogram(latency, 50).valueAt(50);
+            assertTrue(value >= latency && value <= latency * LatencyHistogram.BUCKET_GROWTH + 1,
+                latency + " ms reported as " + value);
+        }
+        //1.1^49 is the first bucket bound above 100 ms
+        assertEquals(107, histogram(100, 50).valueAt(50));
+    }
+
+    @Test
+    @DisplayName("Percentiles are looked up by rank across buckets")
+    void TestPercentileLookup() {
+        LatencyHistogram histogram = histogram(10, 90);
+        add(histogram, 1000, 10);
+        assertEquals(11, histogram.valueAt(50));
+        assertEquals(11, histogram.valueAt(90));
+        assertEquals(1052, histogram.valueAt(91));
+        assertEquals(1052, histogram.valueAt(99));
+    }
+
+    @Test
+    @DisplayName("Latencies under a millisecond and beyond the last bucket are clamped")
+    void TestClampedLatencies() {
+        assertEquals(1, histogram(0, 50).valueAt(50));
+        //160 buckets reach 1.1^159, a little over an hour
+        assertEquals((long) Math.ceil(Math.pow(LatencyHistogram.BUCKET_GROWTH, 159)),
+            histogram(Long.MAX_VALUE, 50).valueAt(50));
+    }
+
+    @Test
+    @DisplayName("Counts are halved every 1000 samples so percentiles follow current latency")
+    void TestDecay() {
+        LatencyHistogram histogram = histogram(10, LatencyHistogram.DECAY_SAMPLES);
+        add(histogram, 1000, 600);
+        //500 samples at 10 ms are left after the decay, against 600 at 1000 ms
+        assertEquals(1052, histogram.valueAt(50));
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTests {
+
+    //Time of the bucket in nanoseconds, moved forward by the tests
+    private long now = 0;
+
+    //Buckets are process wide, every test removes the ones it configured
+    @AfterEach
+    void removeLimits() {
+        for (String endpoint : new String[] {"streaming", "basemaps", null}) {
+            for (String requestType : new String[] {"GetMap", null}) {
+                RateLimiter.configure(endpoint, requestType, 0, 0);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Full bucket lets the burst through, then paces at the rate")
+    void TestBurstThenRate() {
+        RateLimiter bucket = new RateLimiter(10, 5, () -> this.now);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+        //Each permit past the burst is reserved a tenth of a second after the last
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve(), 1000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve(), 1000);
+    }
+
+    @Test
+    @DisplayName("Bucket refills at the rate")
+    void TestRefillRate() {
+        RateLimiter bucket = new RateLimiter(2, 1, () -> this.now);
+        assertEquals(0, bucket.reserve());
+        this.now += TimeUnit.MILLISECONDS.toNanos(250);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.reserve(), 1000);
+        //Paid off the debt and refilled the permit
+        this.now += TimeUnit.MILLISECONDS.toNanos(750);
+        assertEquals(0, bucket.reserve());
+    }
+
+    @Test
+    @DisplayName("A long pause banks no more than the burst")
+    void TestBurstCap() {
+        RateLimiter bucket = new RateLimiter(10, 3, () -> this.now);
+        this.now += TimeUnit.MINUTES.toNanos(10);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+        assertTrue(bucket.reserve() > 0);
+    }
+
+    @Test
+    @DisplayName("A request takes the most specific bucket configured for it")
+    void TestWildcardPrecedence() {
+        RateLimiter.configure("streaming", "GetMap", 1, 1);
+        RateLimiter.configure("streaming", null, 2, 1);
+        RateLimiter.configure(null, "GetMap", 3, 1);
+        RateLimiter.configure(null, null, 4, 1);
+        RateLimiter streamingGetMap = RateLimiter.find("streaming", "GetMap");
+        RateLimiter streaming = RateLimiter.find("streaming", "GetFeature");
+        RateLimiter getMap = RateLimiter.find("basemaps", "GetMap");
+        RateLimiter any = RateLimiter.find("basemaps", "GetTile");
+
+        assertNotNull(streamingGetMap);
+        assertNotSame(streamingGetMap, streaming);
+        assertNotSame(streaming, getMap);
+        assertNotSame(getMap, any);
+        assertNotSame(streamingGetMap, any);
+        //Names match in any case, a request without a type takes the endpoint bucket
+        assertSame(streamingGetMap, RateLimiter.find("streaming", "getmap"));
+        assertSame(streaming, RateLimiter.find("streaming", null));
+        assertSame(any, RateLimiter.find("analytics", null));
+
+        //Without the endpoint bucket, other request types fall through to the wildcards
+        RateLimiter.configure("streaming", null, 0, 0);
+        assertSame(streamingGetMap, RateLimiter.find("streaming", "GetMap"));
+        assertSame(any, RateLimiter.find("streaming", "GetFeature"));
+    }
+
+    @Test
+    @DisplayName("Setting a limit again replaces it, a rate of 0 removes it")
+    void TestSetRateLimit() {
+        assertNull(RateLimiter.find("streaming", "GetMap"));
+        Ogc.setRateLimit("streaming", "GetMap", 5, 1);
+        RateLimiter first = RateLimiter.find("streaming", "GetMap");
+        assertNotNull(first);
+        first.reserve();
+
+        Ogc.setRateLimit("streaming", "GetMap", 5, 1);
+        RateLimiter replaced = RateLimiter.find("streaming", "GetMap");
+        assertNotSame(first, replaced);
+        //The replacement starts full
+        assertEquals(0, replaced.reserve());
+
+        Ogc.setRateLimit("streaming", "GetMap", 0, 1);
+        assertNull(RateLimiter.find("streaming", "GetMap"));
+        assertThrows(IllegalArgumentException.class,
+            () -> Ogc.setRateLimit("wcs", null, 5, 1));
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RequestHedgerTests {
+
+    private int spendAll(RequestHedger.Budget budget) {
+        int hedges = 0;
+        while (budget.spendHedge()) {
+            hedges++;
+        }
+        return hedges;
+    }
+
+    private void count(RequestHedger.Budget budget, int requests) {
+        for (int i = 0; i < requests; i++) {
+            budget.countRequest();
+        }
+    }
+
+    @Test
+    @DisplayName("Budget allows one hedge per 10 requests")
+    void TestBudgetCutOff() {
+        RequestHedger.Budget budget = new RequestHedger.Budget();
+        assertFalse(budget.spendHedge());
+        count(budget, 9);
+        assertEquals(1, spendAll(budget));
+        count(budget, 1);
+        assertEquals(0, spendAll(budget));
+        count(budget, 10);
+        assertEquals(1, spendAll(budget));
+        count(budget, 100);
+        assertEquals(10, spendAll(budget));
+    }
+
+    @Test
+    @DisplayName("Budget unused during a healthy stretch is not banked indefinitely")
+    void TestBudgetDecays() {
+        RequestHedger.Budget budget = new RequestHedger.Budget();
+        count(budget, 100_000);
+        int hedges = spendAll(budget);
+        //A lifetime ratio would allow 10,000 hedges at once
+        assertTrue(hedges <= RequestHedger.HEDGE_RATIO * RequestHedger.DECAY_REQUESTS,
+            hedges + " hedges");
+        assertTrue(hedges >= RequestHedger.HEDGE_RATIO * RequestHedger.DECAY_REQUESTS / 2,
+            hedges + " hedges");
+    }
+
+    @Test
+    @DisplayName("Hedge percentile must be at least 0 and less than 100")
+    void TestValidatePercentile() {
+        assertEquals(0.0, RequestHedger.validatePercentile(0), 0);
+        assertEquals(99.9, RequestHedger.validatePercentile(99.9), 0);
+        assertThrows(IllegalArgumentException.class, () -> RequestHedger.validatePercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> RequestHedger.validatePercentile(-1));
+        assertThrows(IllegalArgumentException.class,
+            () -> RequestHedger.validatePercentile(Double.NaN));
+    }
+}
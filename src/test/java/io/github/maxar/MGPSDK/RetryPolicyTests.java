@@ -0,0 +1,180 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTests {
+
+    private static final String URL = "https://api.maxar.com/streaming/v1/ogc/wms";
+
+    private final Request getRequest = new Request.Builder().url(URL).build();
+
+    //Response with the given status and Retry-After header, or none if null
+    private Response response(int code, String retryAfter) {
+        Response.Builder builder = new Response.Builder()
+            .request(this.getRequest)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("Status " + code);
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+
+    @Test
+    @DisplayName("Backoff stays within an exponential ceiling capped at 30 seconds")
+    void TestBackoffBounds() {
+        for (int attempts = 1; attempts <= 20; attempts++) {
+            long ceiling = Math.min(30_000, 250L << Math.min(attempts - 1, 16));
+            for (int i = 0; i < 200; i++) {
+                long delay = RetryPolicy.backoffMillis(attempts, null);
+                assertTrue(delay >= 0 && delay <= ceiling,
+                    "attempt " + attempts + " waited " + delay);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Backoff is jittered rather than a fixed delay")
+    void TestBackoffJitter() {
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            delays.add(RetryPolicy.backoffMillis(3, null));
+        }
+        //Full jitter over 0 to 1000 ms, 100 draws should never collapse onto a few values
+        assertTrue(delays.size() > 10, delays.size() + " distinct delays");
+    }
+
+    @Test
+    @DisplayName("Retry-After in seconds replaces the backoff, capped at 30 seconds")
+    void TestRetryAfterSeconds() {
+        assertEquals(7000, RetryPolicy.retryAfterMillis(response(503, "7")));
+        assertEquals(7000, RetryPolicy.backoffMillis(1, response(503, " 7 ")));
+        assertEquals(0, RetryPolicy.retryAfterMillis(response(503, "-3")));
+        assertEquals(30_000, RetryPolicy.backoffMillis(1, response(429, "120")));
+    }
+
+    @Test
+    @DisplayName("Retry-After as an HTTP date waits until that date")
+    void TestRetryAfterDate() {
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+        long wait = RetryPolicy.retryAfterMillis(response(503, inTenSeconds));
+        //The date is truncated to whole seconds
+        assertTrue(wait > 8000 && wait <= 10_000, "waited " + wait);
+
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(5));
+        assertEquals(0, RetryPolicy.retryAfterMillis(response(503, past)));
+    }
+
+    @Test
+    @DisplayName("Missing or unreadable Retry-After falls back to the backoff")
+    void TestRetryAfterMissing() {
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response(503, null)));
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response(503, "soon")));
+        assertTrue(RetryPolicy.backoffMillis(1, response(503, "soon")) <= 250);
+    }
+
+    @Test
+    @DisplayName("Transient statuses and transport failures are retried, others are not")
+    void TestRetryableFailures() {
+        RetryPolicy policy = new RetryPolicy();
+        assertTrue(policy.shouldRetry(this.getRequest, response(503, null), null));
+        assertTrue(policy.shouldRetry(this.getRequest, response(429, null), null));
+        assertTrue(policy.shouldRetry(this.getRequest, null, new IOException("reset")));
+        assertFalse(policy.shouldRetry(this.getRequest, response(200, null), null));
+        assertFalse(policy.shouldRetry(this.getRequest, response(404, null), null));
+        assertFalse(policy.shouldRetry(this.getRequest, null, new IllegalStateException()));
+        assertEquals(3, policy.getRetries());
+    }
+
+    @Test
+    @DisplayName("Retry budget allows 10 retries plus 20% of the requests")
+    void TestRetryBudget() throws IOException {
+        RetryPolicy policy = new RetryPolicy();
+        int retries = 0;
+        while (policy.shouldRetry(this.getRequest, response(503, null), null)) {
+            retries++;
+        }
+        assertEquals(RetryPolicy.MIN_RETRIES, retries);
+
+        //50 successful requests add 10 retries to the budget
+        for (int i = 0; i < 50; i++) {
+            policy.execute(this.getRequest, () -> response(200, null)).close();
+        }
+        while (policy.shouldRetry(this.getRequest, response(503, null), null)) {
+            retries++;
+        }
+        assertEquals(20, retries);
+        assertEquals(20, policy.getRetries());
+    }
+
+    @Test
+    @DisplayName("Exhausted budget stops execute after the first attempt")
+    void TestExhaustedBudgetStopsExecute() throws IOException {
+        RetryPolicy policy = new RetryPolicy();
+        while (policy.shouldRetry(this.getRequest, response(503, null), null)) {
+            //Spend the budget
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy.Attempt unavailable = () -> {
+            attempts.incrementAndGet();
+            return response(503, null);
+        };
+        //The request adds 0.2 to the budget, enough for one last retry
+        assertEquals(503, policy.execute(this.getRequest, unavailable).code());
+        assertEquals(2, attempts.get());
+        attempts.set(0);
+        assertEquals(503, policy.execute(this.getRequest, unavailable).code());
+        assertEquals(1, attempts.get());
+        assertEquals(RetryPolicy.MIN_RETRIES + 1, policy.getRetries());
+    }
+
+    @Test
+    @DisplayName("Non-idempotent requests are never retried")
+    void TestNonIdempotentNotRetried() throws IOException {
+        RetryPolicy policy = new RetryPolicy();
+        Request postRequest = new Request.Builder().url(URL)
+            .post(RequestBody.create(new byte[0], null)).build();
+        assertFalse(policy.shouldRetry(postRequest, response(503, null), null));
+        assertFalse(policy.shouldRetry(postRequest, null, new IOException("reset")));
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(IOException.class, () -> policy.execute(postRequest, () -> {
+            attempts.incrementAndGet();
+            throw new IOException("reset");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, policy.getRetries());
+    }
+
+    @Test
+    @DisplayName("Open circuits are never retried")
+    void TestCircuitOpenNotRetried() {
+        RetryPolicy policy = new RetryPolicy();
+        assertFalse(policy.shouldRetry(this.getRequest, null,
+            new CircuitOpenException("streaming", 30_000)));
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(CircuitOpenException.class, () -> policy.execute(this.getRequest, () -> {
+            attempts.incrementAndGet();
+            throw new CircuitOpenException("streaming", 30_000);
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, policy.getRetries());
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+class TilePlanTests {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    @DisplayName("Plan a grid of over 10,000 tiles")
+    void TestPlanLargeGrid() {
+        Geometry footprint = geometryFactory.toGeometry(new Envelope(0, 120, 0, 100));
+        TilePlan[] plan = new TilePlan[1];
+        long start = System.nanoTime();
+        assertTimeout(Duration.ofSeconds(2), () -> plan[0] = TilePlan.plan(footprint, null, 1, 1, 0));
+        System.out.printf("Planned %s tiles in %s ms%n", plan[0].size(),
+            (System.nanoTime() - start) / 1_000_000);
+
+        assertEquals(12000, plan[0].size());
+        assertEquals(120, plan[0].getCOLS());
+        assertEquals(100, plan[0].getROWS());
+        assertEquals("c0_r0", plan[0].key(0));
+        assertEquals("c119_r99", plan[0].key(plan[0].size() - 1));
+    }
+
+    @Test
+    @DisplayName("Tile bounds follow the grid from the top left corner")
+    void TestTileBounds() {
+        Geometry footprint = geometryFactory.toGeometry(new Envelope(10, 12, 20, 21));
+        TilePlan plan = TilePlan.plan(footprint, null, 1, 1, 0);
+
+        assertEquals(2, plan.size());
+        assertEquals("c1_r0", plan.key(1));
+        assertEquals("11.0,20.0,12.0,21.0", plan.bbox(1, false));
+        assertEquals("20.0,11.0,21.0,12.0", plan.bbox(1, true));
+        assertArrayEquals(new double[] {10, 21, 1, 1}, plan.tileGeometry());
+    }
+
+    @Test
+    @DisplayName("Rotated footprint drops the corner tiles of its extent")
+    void TestRotatedFootprintDropsCorners() {
+        //Diamond touching the middle of each side of a 5x5 grid
+        Geometry footprint = geometryFactory.createPolygon(new Coordinate[] {
+            new Coordinate(2.5, 0), new Coordinate(5, 2.5), new Coordinate(2.5, 5),
+            new Coordinate(0, 2.5), new Coordinate(2.5, 0)});
+        Set<String> keys = TilePlan.plan(footprint, null, 1, 1, 0).keys();
+
+        assertEquals(21, keys.size());
+        for (String corner : new String[] {"c0_r0", "c4_r0", "c0_r4", "c4_r4"}) {
+            assertFalse(keys.contains(corner), corner + " should be dropped");
+        }
+        assertTrue(keys.contains("c2_r2"));
+    }
+
+    @Test
+    @DisplayName("Minimum overlap of 0 keeps every tile touching the footprint")
+    void TestZeroOverlapKeepsEdgeTiles() {
+        //The third column holds a 10% sliver of the footprint
+        Geometry footprint = geometryFactory.toGeometry(new Envelope(0, 2.1, 0, 1));
+        TilePlan plan = TilePlan.plan(footprint, null, 1, 1, 0);
+
+        assertEquals(3, plan.size());
+        assertTrue(plan.keys().contains("c2_r0"));
+    }
+
+    @Test
+    @DisplayName("Higher minimum overlap drops slivers but keeps covered tiles")
+    void TestOverlapDropsSlivers() {
+        Geometry footprint = geometryFactory.toGeometry(new Envelope(0, 2.1, 0, 1));
+        assertEquals(Set.of("c0_r0", "c1_r0"), TilePlan.plan(footprint, null, 1, 1, 0.5).keys());
+        assertEquals(Set.of("c0_r0", "c1_r0"), TilePlan.plan(footprint, null, 1, 1, 1).keys());
+
+        Geometry diamond = geometryFactory.createPolygon(new Coordinate[] {
+            new Coordinate(2.5, 0), new Coordinate(5, 2.5), new Coordinate(2.5, 5),
+            new Coordinate(0, 2.5), new Coordinate(2.5, 0)});
+        Set<String> keys = TilePlan.plan(diamond, null, 1, 1, 0.5).keys();
+        //c1_r4 holds 12.5% of the diamond, c2_r4 75%
+        assertFalse(keys.contains("c1_r4"));
+        assertTrue(keys.contains("c2_r4"));
+        assertTrue(keys.contains("c2_r2"));
+    }
+
+    @Test
+    @DisplayName("Minimum overlap must be between 0 and 1")
+    void TestValidateOverlap() {
+        assertEquals(0.0, TilePlan.validateOverlap(0), 0);
+        assertEquals(0.5, TilePlan.validateOverlap(0.5), 0);
+        assertEquals(1.0, TilePlan.validateOverlap(1), 0);
+        assertThrows(IllegalArgumentException.class, () -> TilePlan.validateOverlap(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> TilePlan.validateOverlap(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> TilePlan.validateOverlap(1.1));
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TileSchedulerTests {
+
+    //Every key of a grid, in reverse so map order never matches the expected order by accident
+    private Map<String, String> grid(int cols, int rows) {
+        Map<String, String> tiles = new LinkedHashMap<>();
+        for (int row = rows - 1; row >= 0; row--) {
+            for (int col = cols - 1; col >= 0; col--) {
+                tiles.put("c" + col + "_r" + row, "url");
+            }
+        }
+        return tiles;
+    }
+
+    private List<String> keys(List<Entry<String, String>> entries) {
+        List<String> keys = new ArrayList<>();
+        for (Entry<String, String> entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    @DisplayName("Hilbert order visits a 2x2 grid in a U")
+    void TestHilbertOrder() {
+        assertEquals(List.of("c0_r0", "c0_r1", "c1_r1", "c1_r0"),
+            keys(TileScheduler.order(grid(2, 2), TileScheduler.HILBERT)));
+    }
+
+    @Test
+    @DisplayName("Hilbert index moves one tile at a time and visits every cell once")
+    void TestHilbertIndexIsContinuous() {
+        int n = 8;
+        int[][] cells = new int[n * n][];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                long d = TileScheduler.hilbertIndex(n, x, y);
+                assertTrue(d >= 0 && d < n * n);
+                assertNull(cells[(int) d], "index " + d + " visited twice");
+                cells[(int) d] = new int[] {x, y};
+            }
+        }
+        for (int d = 1; d < n * n; d++) {
+            int step = Math.abs(cells[d][0] - cells[d - 1][0])
+                + Math.abs(cells[d][1] - cells[d - 1][1]);
+            assertEquals(1, step, "step to index " + d);
+        }
+    }
+
+    @Test
+    @DisplayName("Z-order interleaves columns and rows")
+    void TestZOrder() {
+        assertEquals(List.of("c0_r0", "c1_r0", "c0_r1", "c1_r1", "c2_r0", "c3_r0", "c2_r1", "c3_r1"),
+            keys(TileScheduler.order(grid(4, 2), TileScheduler.Z_ORDER)));
+        //x bits on the even positions, y bits on the odd ones
+        assertEquals(0b0111, TileScheduler.zOrderIndex(3, 1));
+        assertEquals(0b1010, TileScheduler.zOrderIndex(0, 3));
+    }
+
+    @Test
+    @DisplayName("Row-major order runs along each row from the top")
+    void TestRowMajorOrder() {
+        assertEquals(List.of("c0_r0", "c1_r0", "c2_r0", "c0_r1", "c1_r1", "c2_r1"),
+            keys(TileScheduler.order(grid(3, 2), "ROWMAJOR")));
+    }
+
+    @Test
+    @DisplayName("WMTS keys are read as [row, col, zoom]")
+    void TestWmtsKeys() {
+        Map<String, String> tiles = new LinkedHashMap<>();
+        tiles.put("[1, 0, 12]", "url");
+        tiles.put("[0,1,12]", "url");
+        tiles.put("[1, 1, 12]", "url");
+        tiles.put("[0, 0, 12]", "url");
+        assertEquals(List.of("[0, 0, 12]", "[0,1,12]", "[1, 0, 12]", "[1, 1, 12]"),
+            keys(TileScheduler.order(tiles, TileScheduler.ROW_MAJOR)));
+        assertEquals(List.of("[0, 0, 12]", "[1, 0, 12]", "[1, 1, 12]", "[0,1,12]"),
+            keys(TileScheduler.order(tiles, TileScheduler.HILBERT)));
+    }
+
+    @Test
+    @DisplayName("Keys without a grid position are dispatched in map order")
+    void TestFallbackToMapOrder() {
+        Map<String, String> tiles = new LinkedHashMap<>();
+        tiles.put("c1_r1", "url");
+        tiles.put("not-a-tile", "url");
+        tiles.put("c0_r0", "url");
+        assertEquals(List.of("c1_r1", "not-a-tile", "c0_r0"),
+            keys(TileScheduler.order(tiles, TileScheduler.HILBERT)));
+    }
+
+    @Test
+    @DisplayName("Prefixed keys of a batch are dispatched one grid at a time")
+    void TestPrefixedGrids() {
+        Map<String, String> tiles = new LinkedHashMap<>();
+        tiles.put("featureA/c1_r0", "url");
+        tiles.put("featureB/c0_r0", "url");
+        tiles.put("featureA/c0_r0", "url");
+        tiles.put("featureB/c1_r0", "url");
+        tiles.put("featureA/c0_r1", "url");
+        List<String> ordered = keys(TileScheduler.order(tiles, TileScheduler.ROW_MAJOR));
+        assertEquals(List.of("featureA/c0_r0", "featureA/c1_r0", "featureA/c0_r1",
+            "featureB/c0_r0", "featureB/c1_r0"), ordered);
+        assertEquals(tiles.keySet(), new HashSet<>(ordered));
+    }
+
+    @Test
+    @DisplayName("Dispatch order defaults to Hilbert and rejects unknown orders")
+    void TestValidateDispatchOrder() {
+        assertEquals(TileScheduler.HILBERT, TileScheduler.validateDispatchOrder(null));
+        assertEquals(TileScheduler.Z_ORDER, TileScheduler.validateDispatchOrder("ZOrder"));
+        assertThrows(IllegalArgumentException.class,
+            () -> TileScheduler.validateDispatchOrder("spiral"));
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.maxar.MGPSDK;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class WfsTests {
+
+    //IDs packed back out of a list of filters, in order
+    private List<String> ids(List<String> filters) {
+        List<String> ids = new ArrayList<>();
+        for (String filter : filters) {
+            assertTrue(filter.startsWith("featureId IN ('") && filter.endsWith("')"), filter);
+            String list = filter.substring("featureId IN ('".length(), filter.length() - 2);
+            for (String id : list.split("','")) {
+                ids.add(id.replace("''", "'"));
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Feature IDs are packed into one IN filter")
+    void TestSingleFilter() {
+        assertEquals(List.of("featureId IN ('a','b','c')"),
+            Wfs.featureIdFilters(List.of("a", "b", "c")));
+    }
+
+    @Test
+    @DisplayName("Filters are split every 100 IDs")
+    void TestSplitAtIdCount() {
+        List<String> featureIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            featureIds.add("id" + i);
+        }
+        List<String> filters = Wfs.featureIdFilters(featureIds);
+
+        assertEquals(3, filters.size());
+        assertEquals(100, ids(List.of(filters.get(0))).size());
+        assertEquals(100, ids(List.of(filters.get(1))).size());
+        assertEquals(50, ids(List.of(filters.get(2))).size());
+        assertEquals(featureIds, ids(filters));
+    }
+
+    @Test
+    @DisplayName("Filters are split before they pass 4000 characters")
+    void TestSplitAtLength() {
+        //64 character IDs, 67 characters each with quotes and comma
+        List<String> featureIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            featureIds.add(String.format("%064x", i));
+        }
+        List<String> filters = Wfs.featureIdFilters(featureIds);
+
+        assertEquals(2, filters.size());
+        for (String filter : filters) {
+            assertTrue(filter.length() <= Wfs.MAX_FILTER_LENGTH, "filter of " + filter.length());
+        }
+        //The first filter is as full as the limit allows
+        assertTrue(filters.get(0).length() + 67 > Wfs.MAX_FILTER_LENGTH);
+        assertEquals(featureIds, ids(filters));
+    }
+
+    @Test
+    @DisplayName("Duplicate IDs are looked up once, keeping the order they first appear in")
+    void TestDedupeKeepsOrder() {
+        assertEquals(List.of("featureId IN ('c','a','b')"),
+            Wfs.featureIdFilters(List.of("c", "a", "c", "b", "a")));
+    }
+
+    @Test
+    @DisplayName("Single quotes are escaped by doubling them")
+    void TestQuoteEscaping() {
+        assertEquals(List.of("featureId IN ('o''brien','x'' OR ''1''=''1')"),
+            Wfs.featureIdFilters(List.of("o'brien", "x' OR '1'='1")));
+    }
+
+    @Test
+    @DisplayName("No IDs gives no filters")
+    void TestNoIds() {
+        assertTrue(Wfs.featureIdFilters(List.of()).isEmpty());
+    }
+}